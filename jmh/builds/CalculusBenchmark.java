@@ -0,0 +1,67 @@
+package builds;
+
+import core.Equation;
+import core.Node;
+import org.openjdk.jmh.annotations.*;
+//the annotation, not builds.Benchmark
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures integrals, sums, derivatives, simplification and Taylor expansions of equations
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculusBenchmark {
+
+    @Param({Corpus.POLYNOMIAL, Corpus.TRIG, Corpus.RATIONAL, Corpus.EXPONENTIAL, Corpus.DEEP})
+    public String equation;
+
+    private Equation equ;
+
+    @Setup
+    public void setup() {
+        equ = new Equation(Corpus.equation(equation));
+        equ.calculate(0.5d);
+    }
+
+    @Benchmark
+    public double definiteIntegral() {
+        return equ.definiteIntegral(0.0d, 3.0d);
+    }
+
+    @Benchmark
+    public double sum() {
+        return equ.sum(1, 1000);
+    }
+
+    @Benchmark
+    public Node calculateDerivative() {
+        return equ.calculateDerivative();
+    }
+
+    @Benchmark
+    public Node simplify() {
+        return equ.simplify();
+    }
+
+    /**
+     * Taylor expansions of increasing order around x = 1
+     */
+    @State(Scope.Thread)
+    public static class Order {
+        @Param({"5", "20", "100"})
+        public int k;
+    }
+
+    @Benchmark
+    public Node taylorExpansion(Order order) {
+        return equ.taylorExpansion(order.k, 1.0d);
+    }
+
+}
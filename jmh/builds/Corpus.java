@@ -0,0 +1,34 @@
+package builds;
+
+/**
+ * Equations measured by the JMH benchmarks
+ *
+ * Benchmarks take the name of an equation as a parameter, either a realistic equation written out
+ * in full, or "terms:N" for a long sum of N simple terms and "deep:N" for N levels of nesting,
+ * both generated the same way as in {@link Benchmark}.
+ */
+final class Corpus {
+
+    static final String POLYNOMIAL = "3x^4-2x^3+x-7";
+    static final String TRIG = "sin(x^2) - 2x";
+    static final String RATIONAL = "cos(2x)*x/(x^2+1)";
+    static final String EXPONENTIAL = "e^sin(x)/(x^2+1)";
+    static final String TERMS = "terms:200";
+    static final String DEEP = "deep:12";
+
+    private Corpus() {
+    }
+
+    /**
+     * @param name equation written out, "terms:N" or "deep:N"
+     * @return equation to be parsed
+     */
+    static String equation(String name) {
+        if (name.startsWith("terms:"))
+            return Benchmark.generate(Integer.parseInt(name.substring(6)));
+        if (name.startsWith("deep:"))
+            return Benchmark.generateDeep(Integer.parseInt(name.substring(5)));
+        return name;
+    }
+
+}
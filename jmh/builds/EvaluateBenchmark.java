@@ -0,0 +1,54 @@
+package builds;
+
+import core.Equation;
+import org.openjdk.jmh.annotations.*;
+//the annotation, not builds.Benchmark
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calculating values and slopes of equations at a point
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+    @Param({Corpus.POLYNOMIAL, Corpus.TRIG, Corpus.RATIONAL, Corpus.EXPONENTIAL, Corpus.TERMS, Corpus.DEEP})
+    public String equation;
+
+    private Equation equ;
+    private double x;
+
+    @Setup
+    public void setup() {
+        equ = new Equation(Corpus.equation(equation));
+        //compiles the equation before measuring
+        equ.calculate(0.5d);
+    }
+
+    /**
+     * @return next value of x, moving through [0, 4) so results cannot be reused between calls
+     */
+    private double nextX() {
+        x += 0.001d;
+        if (x >= 4.0d)
+            x = 0.0d;
+        return x;
+    }
+
+    @Benchmark
+    public double calculate() {
+        return equ.calculate(nextX());
+    }
+
+    @Benchmark
+    public double slopeAt() {
+        return equ.slopeAt(nextX());
+    }
+
+}
@@ -0,0 +1,32 @@
+package builds;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so every result includes the bytes allocated
+ * per operation. Takes the usual JMH command line options, such as a regular expression
+ * selecting benchmarks: {@code java -jar target/benchmarks.jar Parse}
+ */
+public class JmhMain {
+
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions options;
+        try {
+            options = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.out.println("Invalid options: " + e.getMessage());
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("--add-modules=jdk.incubator.vector")
+                .build()).run();
+    }
+
+}
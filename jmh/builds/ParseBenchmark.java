@@ -0,0 +1,39 @@
+package builds;
+
+import core.Equation;
+import org.openjdk.jmh.annotations.*;
+//the annotation, not builds.Benchmark
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing equations of increasing length with {@code new Equation(String)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    //approximate length of the equation in characters
+    @Param({"100", "1000", "10000", "100000"})
+    public int length;
+
+    private String equation;
+
+    @Setup
+    public void setup() {
+        equation = Corpus.equation("terms:1");
+        for (int terms = 1; equation.length() < length; terms += terms / 4 + 1)
+            equation = Corpus.equation("terms:" + terms);
+    }
+
+    @Benchmark
+    public Equation parse() {
+        return new Equation(equation);
+    }
+
+}
@@ -0,0 +1,911 @@
+package builds;
+
+import core.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Build for measuring the speed of core code
+ *
+ * Each benchmark prints its results to standard output.
+ * Timings are rough, every case is warmed up before it is measured
+ * so the JIT has a chance to compile it first.
+ *
+ * Benchmarks are organized by the syntax bench_[feature]
+ *
+ */
+public class Benchmark {
+
+    //results are added to this so the JIT cannot remove the calculations
+    private static double sink;
+
+    /**
+     * Runs every benchmark, or only the ones named in args, such as "parse" or "batch"
+     */
+    public static void main(String[] args) {
+        if (selected(args, "parse"))
+            bench_parse(new int[]{1_000, 10_000, 100_000, 500_000});
+        if (selected(args, "cache"))
+            bench_cache("2 3", "1 .5", "2  3x", "s in x", "p i", "l n x", "sin x", "2 X", " 2\tx ",
+                    "e ^ x", "1 / 2 x", "co s(x)", generate(50));
+        if (selected(args, "compiledEquation")) {
+            bench_compiledEquation("sin(x^2) - 2x", 2_000_000);
+            bench_compiledEquation("cos(2x)*x/(x^2+1)", 2_000_000);
+            bench_compiledEquation(generate(200), 50_000);
+        }
+        if (selected(args, "derivative"))
+            bench_derivative(generate(200), 20_000);
+        if (selected(args, "batch")) {
+            bench_batch("sin(x^2) - 2x", 4_000_000);
+            bench_batch("x^3/(x^2+1)+3x", 4_000_000);
+        }
+        if (selected(args, "bytecode")) {
+            bench_bytecode("sin(x^2) - 2x", 4_000_000);
+            bench_bytecode(generate(40), 500_000);
+            bench_bytecode(generate(200), 100_000);
+            bench_bytecode(generateDeep(60), 100_000);
+        }
+        if (selected(args, "dag")) {
+            bench_dag("sin(x^2)/(x^2+1)", 3, 200_000);
+            bench_dag(generateDeep(12), 2, 50_000);
+        }
+        if (selected(args, "simplify")) {
+            bench_simplify("cos(2x)*x/(x^2+1)", 1, 2_000_000);
+            bench_simplify("e^sin(x)/(x^2+1)", 2, 1_000_000);
+            bench_simplify("(x-1)^3*sin(x)", 3, 1_000_000);
+            bench_simplify("3*x^-1+x^-2*sin(x)", 2, 1_000_000);
+            bench_simplify(generateDeep(8), 2, 100_000);
+        }
+        if (selected(args, "variables")) {
+            bench_variables("sin(x^2) - 2x", "x", 2_000_000);
+            bench_variables("x*y + sin(z)*x - y/z", "x", 2_000_000, "y", "z");
+        }
+        if (selected(args, "interval")) {
+            bench_interval("sin(x^2) - 2x", 2_000_000);
+            bench_interval("e^sin(x)/(x^2+1)", 2_000_000);
+            bench_interval(generate(200), 20_000);
+        }
+        if (selected(args, "roots")) {
+            bench_roots("sin(x)", -1000.0d, 1000.0d);
+            bench_roots("sin(x^2) - x/10", -20.0d, 20.0d);
+            bench_roots("(x-1)^2*(x+2)*cos(x)", -50.0d, 50.0d);
+        }
+        if (selected(args, "slope")) {
+            bench_slope("sin(x^2) - 2x", 2_000_000);
+            bench_slope(generateDeep(20), 200_000);
+        }
+        if (selected(args, "integrate")) {
+            bench_integrate("x^2", 0.0d, 3.0d, 9.0d);
+            bench_integrate("e^(-x^2)", -10.0d, 10.0d, Math.sqrt(Math.PI));
+            bench_integrate("1/(x^2+0.0001)", -1.0d, 1.0d, 200.0d * Math.atan(100.0d));
+            bench_integrate("sin(x)/x", -1.0d, 1.0d, 1.8921661407343660d);
+        }
+        if (selected(args, "parallelIntegrate"))
+            bench_parallelIntegrate(generateDeep(16), -20.0d, 20.0d, 256);
+        if (selected(args, "shared")) {
+            bench_shared("sin(x^2) - 2x", 20_000);
+            bench_shared(generateDeep(12), 2_000);
+        }
+        if (selected(args, "series")) {
+            bench_series("1/x^2", 1, 1e-10, Math.PI * Math.PI / 6.0d);
+            bench_series("1/x^1.5", 1, 1e-10, 2.612375348685488d);
+            bench_series("cos(pi x)/(x+1)^2", 0, 1e-10, Math.PI * Math.PI / 12.0d);
+            bench_series("x*0.9^x", 1, 1e-10, 90.0d);
+            bench_seriesSingular(1e-6, "1/x^2", "0.5^x/(x-5)", "(-1)^x/(x-600)", "1/(x+1)^1.1+0/(x-300)",
+                    "ln(x-3)^-2");
+        }
+        if (selected(args, "rangeSum"))
+            bench_rangeSum("sin(x)/x^2+1/x", 20_000_000L);
+        if (selected(args, "headless"))
+            bench_headless(800, 600, "sin(x^2) - 2x", "x^3/(x^2+1)", "tan(x)");
+        if (selected(args, "taylor")) {
+            bench_taylor("e^sin(x)/(x^2+1)", new int[]{5, 20, 100}, 5);
+            bench_taylor(generateDeep(8), new int[]{5, 20, 100}, 5);
+        }
+
+        if (sink == 42.0)
+            System.out.println();
+    }
+
+    private static boolean selected(String[] args, String name) {
+        if (args.length == 0)
+            return true;
+        for (String arg : args)
+            if (arg.equalsIgnoreCase(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Measures parsing equations of increasing length with {@code new Equation(String)}
+     *
+     * @param lengths approximate lengths, in characters, of the equations to be parsed
+     */
+    private static void bench_parse(int[] lengths) {
+        System.out.println("Parsing");
+        for (int length : lengths) {
+            String s = generate(1);
+            for (int terms = 1; s.length() < length; terms += terms / 4 + 1)
+                s = generate(terms);
+
+            double best = Double.MAX_VALUE;
+            for (int run = 0; run < 8; run++) {
+                long start = System.nanoTime();
+                Equation equ = new Equation(s);
+                long time = System.nanoTime() - start;
+                sink += equ.calculate(1.0);
+                if (run >= 3)
+                    best = Math.min(best, time / 1_000_000.0d);
+            }
+            System.out.printf("    %8d chars: %10.3f ms (%.1f MB/s)%n", s.length(), best, s.length() / best / 1000.0d);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Checks that equations from an {@link EquationCache} are the same as the ones parsed
+     * directly, parsing every text once for the cache to miss and once more for it to hit,
+     * and measures a hit against parsing
+     *
+     * @param equations texts to be parsed, whitespace included
+     */
+    private static void bench_cache(String... equations) {
+        EquationCache cache = new EquationCache(1024, 1L << 20);
+        int mismatches = 0;
+        for (int run = 0; run < 2; run++) {
+            for (String s : equations) {
+                String direct, cached;
+                try {
+                    direct = Double.toString(new Equation(s).calculate(0.7d));
+                } catch (InvalidEquationException e) {
+                    direct = "invalid";
+                }
+                try {
+                    cached = Double.toString(cache.get(s).calculate(0.7d));
+                } catch (InvalidEquationException e) {
+                    cached = "invalid";
+                }
+                if (!direct.equals(cached)) {
+                    System.out.println("    mismatch <" + s + ">: parsed " + direct + ", cached " + cached);
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println("Cache, " + equations.length + " equations, " + mismatches + " mismatches, " + cache);
+
+        String s = equations[equations.length - 1];
+        double parse = microseconds(() -> sink += new Equation(s).calculate(1.0d));
+        double hit = microseconds(() -> sink += cache.get(s).calculate(1.0d));
+        System.out.printf("    parse %10.3f us, hit %10.3f us (%.1fx)%n%n", parse, hit, parse / hit);
+    }
+
+    /**
+     * Compares the tree walking {@code Node.calculate} with {@code CompiledEquation.calculate}
+     *
+     * @param s equation to be parsed and compiled
+     * @param points number of x values calculated per run
+     */
+    private static void bench_compiledEquation(String s, int points) {
+        Equation equ = new Equation(s);
+        CompiledEquation compiled = equ.compile();
+        System.out.println("Equation " + abbreviate(s) + " (" +
+                compiled.getInstructionCount() + " instructions)");
+
+        double tree = throughput(equ::calculate, points);
+        double flat = throughput(compiled::calculate, points);
+        System.out.printf("    Node.calculate:             %10.3f Mpoints/s%n", tree);
+        System.out.printf("    CompiledEquation.calculate: %10.3f Mpoints/s (%.1fx)%n%n", flat, flat / tree);
+    }
+
+    /**
+     * Measures building the derivative of an equation and calculating values of the result
+     *
+     * @param s equation to be parsed and differentiated
+     * @param points number of x values calculated per run
+     */
+    private static void bench_derivative(String s, int points) {
+        Equation equ = new Equation(s);
+        System.out.println("Derivative of " + abbreviate(s));
+
+        double best = Double.MAX_VALUE;
+        Node derv = null;
+        for (int run = 0; run < 20; run++) {
+            long start = System.nanoTime();
+            derv = equ.calculateDerivative();
+            long time = System.nanoTime() - start;
+            if (run >= 5)
+                best = Math.min(best, time / 1000.0d);
+        }
+        System.out.printf("    calculateDerivative:        %10.2f us%n", best);
+        System.out.printf("    derivative Node.calculate:  %10.3f Mpoints/s%n%n", throughput(derv::calculate, points));
+    }
+
+    /**
+     * Compares calculating a repeated derivative as a tree and as a hash-consed {@code ExpressionDag}
+     *
+     * @param s equation to be parsed and differentiated
+     * @param order number of times the equation is differentiated
+     * @param points number of x values calculated per run
+     */
+    private static void bench_dag(String s, int order, int points) {
+        Node derv = new Equation(s);
+        long start = System.nanoTime();
+        for (int i = 0; i < order; i++)
+            derv = derv.calculateDerivative();
+        long time = System.nanoTime() - start;
+
+        ExpressionDag dag = derv.toDag();
+        System.out.println("Derivative " + order + " of " + abbreviate(s) + " (built in " + time / 1000 + " us)");
+        System.out.println("    nodes: " + dag.getTreeNodeCount() + " in tree, " + dag.getNodeCount() + " after hash-consing");
+
+        double tree = throughput(derv::calculate, points);
+        double shared = throughput(dag::calculate, points);
+        System.out.printf("    Node.calculate:             %10.3f Mpoints/s%n", tree);
+        System.out.printf("    ExpressionDag.calculate:    %10.3f Mpoints/s (%.1fx)%n%n", shared, shared / tree);
+    }
+
+    /**
+     * Compares calculating a compiled derivative before and after {@link Node#simplify()},
+     * and checks the simplified derivative matches the original on a grid and at random x values
+     *
+     * @param s equation to be parsed
+     * @param order order of the derivative
+     * @param points number of x values calculated per run
+     */
+    private static void bench_simplify(String s, int order, int points) {
+        Node derv = new Equation(s);
+        for (int i = 0; i < order; i++)
+            derv = derv.calculateDerivative();
+        long start = System.nanoTime();
+        SimplificationResult result = derv.simplifyAndReport();
+        long time = System.nanoTime() - start;
+        CompiledEquation original = derv.compile(), simplified = result.getNode().compile();
+
+        double maxError = 0.0d;
+        for (double x = -3.0d; x < 3.0d; x += 0.01d) {
+            double exact = original.calculate(x);
+            if (Double.isFinite(exact))
+                maxError = Math.max(maxError, Math.abs(simplified.calculate(x) - exact) / (1 + Math.abs(exact)));
+        }
+
+        System.out.println("Derivative " + order + " of " + abbreviate(s) + " (simplified in " + time / 1000 + " us)");
+        System.out.println("    " + result + ", max relative error " + String.format("%.2e", maxError)
+                + ", " + mismatches(original, simplified) + " mismatches");
+        double before = throughput(original::calculate, points);
+        double after = throughput(simplified::calculate, points);
+        System.out.printf("    original:                   %10.3f Mpoints/s%n", before);
+        System.out.printf("    simplified:                 %10.3f Mpoints/s (%.1fx)%n%n", after, after / before);
+    }
+
+    /**
+     * Compares the exact {@code slopeAt} with the forward difference it replaced
+     *
+     * @param s equation to be parsed
+     * @param points number of x values calculated per run
+     */
+    private static void bench_slope(String s, int points) {
+        Equation equ = new Equation(s);
+        Node derv = equ.calculateDerivative();
+        final double h = .0000000001d;
+        DoubleUnaryOperator difference = x -> (equ.calculate(x + h) - equ.calculate(x)) / ((x + h) - x);
+
+        double maxDifferenceError = 0.0d, maxError = 0.0d;
+        for (double x = 0.05d; x < 3.0d; x += 0.05d) {
+            double exact = derv.calculate(x);
+            maxDifferenceError = Math.max(maxDifferenceError, Math.abs(difference.applyAsDouble(x) - exact) / (1 + Math.abs(exact)));
+            maxError = Math.max(maxError, Math.abs(equ.slopeAt(x) - exact) / (1 + Math.abs(exact)));
+        }
+
+        System.out.println("Slope of " + abbreviate(s));
+        System.out.printf("    forward difference:         %10.3f Mpoints/s, max relative error %.2e%n",
+                throughput(difference, points), maxDifferenceError);
+        System.out.printf("    slopeAt (dual numbers):     %10.3f Mpoints/s, max relative error %.2e%n%n",
+                throughput(equ::slopeAt, points), maxError);
+    }
+
+    /**
+     * Compares bounding an equation over ranges of x 0.01 wide with calculating it at a point,
+     * and checks the bounds hold 16 calculated values of each range
+     *
+     * @param s equation to be parsed
+     * @param points number of ranges bounded per run
+     */
+    private static void bench_interval(String s, int points) {
+        CompiledEquation compiled = new Equation(s).compile();
+        int checked = 0, outside = 0;
+        double width = 0.0d;
+        for (int i = 0; i < 10_000; i++) {
+            double a = i * 0.001d - 5.0d;
+            Interval bounds = compiled.calculateBounds(a, a + 0.01d);
+            width += bounds.getUpper() - bounds.getLower();
+            for (int k = 0; k <= 15; k++) {
+                double v = compiled.calculate(a + 0.01d * k / 15.0d);
+                checked++;
+                if (!Double.isNaN(v) && !bounds.contains(v))
+                    outside++;
+            }
+        }
+
+        System.out.println("Bounds of " + abbreviate(s) + " over ranges 0.01 wide");
+        System.out.printf("    calculate(x):               %10.3f Mpoints/s%n", throughput(compiled::calculate, points));
+        System.out.printf("    calculateBounds(x, x+0.01): %10.3f Mranges/s, mean width %.3g, %d of %d values outside%n%n",
+                throughput(x -> compiled.calculateBounds(x, x + 0.01d).getUpper(), points), width / 10_000, outside, checked);
+    }
+
+    /**
+     * Compares finding the roots of an equation with a {@link RootFinder} against sampling it every
+     * 0.001 and bisecting each sign change, both to a tolerance of 1e-10
+     *
+     * @param s equation to be parsed
+     * @param a starting bound
+     * @param b ending bound
+     */
+    private static void bench_roots(String s, double a, double b) {
+        Equation equ = new Equation(s);
+        CompiledEquation compiled = equ.compile();
+        final double step = 0.001d, tolerance = 0.0000000001d;
+        int[] sampled = new int[1];
+        long[] sampledEvaluations = new long[1];
+        RootResult[] result = new RootResult[1];
+
+        System.out.println("Roots of " + abbreviate(s) + " from " + a + " to " + b);
+        System.out.printf("    sampling every %.3f:   %10.1f us, %d roots, %d evaluations%n", step, microseconds(() -> {
+            int count = 0;
+            long evaluations = 1;
+            double x0 = a, f0 = compiled.calculate(a);
+            for (long i = 1; x0 < b; i++) {
+                double x1 = Math.min(a + i * step, b), f1 = compiled.calculate(x1);
+                evaluations++;
+                if (f0 == 0.0d || (f0 < 0.0d) != (f1 < 0.0d) && f1 != 0.0d) {
+                    double lo = x0, hi = x1, flo = f0;
+                    while (flo != 0.0d && hi - lo > tolerance) {
+                        double mid = 0.5d * (lo + hi), fmid = compiled.calculate(mid);
+                        evaluations++;
+                        if ((fmid < 0.0d) == (flo < 0.0d)) {
+                            lo = mid;
+                            flo = fmid;
+                        } else
+                            hi = mid;
+                    }
+                    count++;
+                }
+                x0 = x1;
+                f0 = f1;
+            }
+            sampled[0] = count;
+            sampledEvaluations[0] = evaluations;
+        }), sampled[0], sampledEvaluations[0]);
+        System.out.printf("    RootFinder:            %10.1f us, %d roots, %d evaluations, %d bounds%n%n",
+                microseconds(() -> result[0] = equ.findRoots(a, b, tolerance)),
+                result[0].getCount(), result[0].getEvaluations(), result[0].getBoundEvaluations());
+    }
+
+    /**
+     * Compares calculating a single variable equation at x with calculating it from an array of
+     * variables, and measures the partial derivative with respect to the first variable.
+     * Every variable other than the first is set to 0.5
+     *
+     * @param s equation to be parsed
+     * @param first name of the variable that changes between points
+     * @param points number of points calculated per run
+     * @param others names of the other variables
+     */
+    private static void bench_variables(String s, String first, int points, String... others) {
+        String[] names = new String[others.length + 1];
+        names[0] = first;
+        System.arraycopy(others, 0, names, 1, others.length);
+        Equation equ = new Equation(s, names);
+        CompiledEquation compiled = equ.compile();
+        ExpressionDag dag = equ.toDag();
+        double[] variables = new double[names.length];
+        Arrays.fill(variables, 0.5d);
+
+        System.out.println("Equation " + abbreviate(s) + " of " + names.length + " variables");
+        if (names.length == 1)
+            System.out.printf("    calculate(x):               %10.3f Mpoints/s%n", throughput(compiled::calculate, points));
+        System.out.printf("    calculate(double[]):        %10.3f Mpoints/s%n", throughput(x -> {
+            variables[0] = x;
+            return compiled.calculate(variables);
+        }, points));
+        System.out.printf("    ExpressionDag:              %10.3f Mpoints/s%n", throughput(x -> {
+            variables[0] = x;
+            return dag.calculate(variables);
+        }, points));
+        System.out.printf("    slopeAt(double[], 0):       %10.3f Mpoints/s%n%n", throughput(x -> {
+            variables[0] = x;
+            return compiled.slopeAt(variables, 0);
+        }, points));
+    }
+
+    /**
+     * Compares calculating one x at a time with the batch {@code calculate(double[], double[])}
+     *
+     * @param s equation to be parsed
+     * @param points number of x values calculated per run
+     */
+    /**
+     * Compares the 10000 sample left endpoint sum that definiteIntegral used to calculate
+     * against adaptive Gauss-Kronrod quadrature
+     *
+     * @param s equation to be integrated
+     * @param a starting bound
+     * @param b ending bound
+     * @param exact exact value of the integral
+     */
+    private static void bench_integrate(String s, double a, double b, double exact) {
+        Equation equ = new Equation(s);
+        CompiledEquation compiled = equ.compile();
+        double[] riemann = new double[1];
+        IntegrationResult[] result = new IntegrationResult[1];
+
+        System.out.println("Integral of " + abbreviate(s) + " from " + a + " to " + b);
+        System.out.printf("    10000 left endpoints:  %10.1f us, error %.2e%n", microseconds(() -> {
+            double sum = 0.0d, dx = (b - a) / 10000.0d;
+            for (double pos = a; pos < b; pos += dx)
+                sum += compiled.calculate(pos) * dx;
+            riemann[0] = sum;
+        }), Math.abs(riemann[0] - exact));
+        System.out.printf("    Gauss-Kronrod:         %10.1f us, error %.2e, estimated %.2e, %d evaluations%n%n",
+                microseconds(() -> result[0] = equ.integrate(a, b)),
+                Math.abs(result[0].getValue() - exact), result[0].getErrorEstimate(), result[0].getEvaluations());
+    }
+
+    /**
+     * Measures integrating an expensive equation split into pieces on 1 to N threads,
+     * N being the number of available processors, and checks every result is identical
+     *
+     * @param s equation to be integrated
+     * @param a starting bound
+     * @param b ending bound
+     * @param pieces number of equal subintervals
+     */
+    private static void bench_parallelIntegrate(String s, double a, double b, int pieces) {
+        Equation equ = new Equation(s);
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Parallel integral of " + abbreviate(s) + " from " + a + " to " + b
+                + ", " + pieces + " pieces, " + processors + " processors");
+
+        double serial = 0.0d;
+        IntegrationResult[] result = new IntegrationResult[1];
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            Integrator integrator = new Integrator(1e-10, 1e-10, 10_000_000, threads, pieces);
+            double time = microseconds(() -> result[0] = equ.integrate(a, b, integrator));
+            if (threads == 1)
+                serial = time;
+            System.out.printf("    %3d threads: %10.1f us, speedup %5.2f, value %s, %d evaluations%n", threads, time,
+                    serial / time, Double.toHexString(result[0].getValue()), result[0].getEvaluations());
+            if (threads == processors)
+                break;
+        }
+        System.out.println();
+    }
+
+    /**
+     * Shares one parsed equation between 1 to N threads, N being at least 8 so threads interleave
+     * even on few processors, and measures the total throughput of calculating values and slopes.
+     * Each thread also calculates batches, compiling the equation lazily at the same time as the others,
+     * and symbolic derivatives, and every result is checked against one calculated on a single thread
+     *
+     * @param s equation to be shared
+     * @param points number of x values calculated by each thread per round
+     */
+    private static void bench_shared(String s, int points) {
+        final int rounds = 20;
+        int processors = Runtime.getRuntime().availableProcessors();
+        int maxThreads = Math.max(processors, 8);
+
+        Equation reference = new Equation(s);
+        Node exact = reference.calculateDerivative(), simplified = exact.simplify();
+        String derivative = simplified.toString();
+        double[] xs = new double[points], values = new double[points], slopes = new double[points];
+        double[] batch = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = i * 0.001d - 3.0d;
+            values[i] = reference.calculate(xs[i]);
+            slopes[i] = reference.slopeAt(xs[i]);
+        }
+        reference.calculate(xs, batch);
+
+        System.out.println("Shared equation " + abbreviate(s) + ", " + processors + " processors, "
+                + mismatches(exact.compile(), simplified.compile()) + " mismatches in the simplified derivative");
+        //warmup
+        for (int run = 0; run < 3; run++)
+            shared(s, maxThreads, rounds, xs, values, slopes, batch, derivative);
+        double serial = 0.0d;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            long[] run = shared(s, threads, rounds, xs, values, slopes, batch, derivative);
+            double throughput = (double) threads * rounds * points / (run[0] / 1000.0d);
+            if (threads == 1)
+                serial = throughput;
+            System.out.printf("    %3d threads: %10.3f Mpoints/s, speedup %5.2f, %d mismatches%n",
+                    threads, throughput, throughput / serial, run[1]);
+            if (threads == maxThreads)
+                break;
+        }
+        System.out.println();
+    }
+
+    /**
+     * Runs the threads of {@link #bench_shared(String, int)} on a newly parsed equation,
+     * so the threads race to compile it
+     *
+     * @return time taken in nanoseconds and number of results that differ from the reference
+     */
+    private static long[] shared(String s, int threads, int rounds, double[] xs, double[] values, double[] slopes,
+                                 double[] batch, String derivative) {
+        Equation equ = new Equation(s);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        long mismatches = 0;
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long wrong = 0;
+                double[] out = new double[xs.length];
+                for (int round = 0; round < rounds; round++) {
+                    for (int i = 0; i < xs.length; i++) {
+                        if (Double.compare(equ.calculate(xs[i]), values[i]) != 0)
+                            wrong++;
+                        if (Double.compare(equ.slopeAt(xs[i]), slopes[i]) != 0)
+                            wrong++;
+                    }
+                    equ.calculate(xs, out);
+                    if (!Arrays.equals(out, batch))
+                        wrong++;
+                    if (!equ.calculateDerivative().simplify().toString().equals(derivative))
+                        wrong++;
+                }
+                return wrong;
+            }));
+        }
+        try {
+            for (Future<Long> future : futures)
+                mismatches += future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+        return new long[]{System.nanoTime() - start, mismatches};
+    }
+
+    /**
+     * Compares adding terms until one step changes the sum by less than the precision,
+     * as sum(int, double) used to, against the accelerated sumSeries
+     *
+     * @param s equation giving the terms
+     * @param n first term
+     * @param precision precision passed to both
+     * @param exact exact value of the sum
+     */
+    private static void bench_series(String s, int n, double precision, double exact) {
+        Equation equ = new Equation(s);
+        CompiledEquation compiled = equ.compile();
+        double[] naive = new double[2];
+        SeriesResult[] result = new SeriesResult[1];
+
+        System.out.println("Sum of " + abbreviate(s) + " from " + n + ", precision " + precision);
+        System.out.printf("    term by term:   %12.1f us, error %.2e, %d terms%n", microseconds(() -> {
+            double last = Double.NEGATIVE_INFINITY, sum = 0.0d;
+            int i = n;
+            for (; Math.abs(sum - last) >= precision; i++) {
+                last = sum;
+                sum += compiled.calculate(i);
+            }
+            naive[0] = sum;
+            naive[1] = i - n;
+        }), Math.abs(naive[0] - exact), (long) naive[1]);
+        System.out.printf("    accelerated:    %12.1f us, error %.2e, estimated %.2e, %d terms, %s%n%n",
+                microseconds(() -> result[0] = equ.sumSeries(n, precision)), Math.abs(result[0].getValue() - exact),
+                result[0].getErrorEstimate(), result[0].getTerms(), result[0].getMethod());
+    }
+
+    /**
+     * Checks that series summed from 0 that reach a term that is not finite stop there and are
+     * not reported as converged, whichever method is chosen for them
+     *
+     * @param precision precision of the sums
+     * @param equations terms of the series
+     */
+    private static void bench_seriesSingular(double precision, String... equations) {
+        int mismatches = 0;
+        System.out.println("Sums with a singular term, precision " + precision);
+        for (String s : equations) {
+            SeriesResult result = new Equation(s).sumSeries(0, precision);
+            if (result.isConverged())
+                mismatches++;
+            System.out.println("    " + abbreviate(s) + ": " + result);
+        }
+        System.out.println("    " + mismatches + " reported as converged" + System.lineSeparator());
+    }
+
+    /**
+     * Compares the single threaded loop sum(int, int) used to run against chunked sums on
+     * 1 to N threads, N being the number of available processors
+     *
+     * @param s equation giving the terms
+     * @param terms number of terms, starting at 1
+     */
+    private static void bench_rangeSum(String s, long terms) {
+        Equation equ = new Equation(s);
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Sum of " + abbreviate(s) + " from 1 to " + terms + ", " + processors + " processors");
+
+        long start = System.nanoTime();
+        double loop = 0.0d;
+        for (long n = 1; n <= terms; n++)
+            loop += equ.calculate(n);
+        System.out.printf("    calculate loop:  %8.1f ms, value %s%n", (System.nanoTime() - start) / 1e6d,
+                Double.toHexString(loop));
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            RangeSummation summation = new RangeSummation(threads, 1 << 16);
+            double value = 0.0d, best = Double.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                start = System.nanoTime();
+                value = equ.sum(1L, terms, summation, null, null);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6d);
+            }
+            System.out.printf("    %3d threads:     %8.1f ms, value %s%n", threads, best, Double.toHexString(value));
+            if (threads == processors)
+                break;
+        }
+        System.out.println();
+    }
+
+    /**
+     * Measures rendering PNG plots with PlotRenderer on 1 to N threads at once,
+     * N being the number of available processors
+     *
+     * @param width width of the plots
+     * @param height height of the plots
+     * @param equations equations drawn in every plot
+     */
+    private static void bench_headless(int width, int height, String... equations) {
+        List<Equation> list = new ArrayList<>();
+        for (String s : equations)
+            list.add(new Equation(s));
+        PlotRenderer renderer = new PlotRenderer(width, height);
+        Viewport viewport = new Viewport(-10.0d, 10.0d, -7.5d, 7.5d);
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Headless " + width + "x" + height + " PNG plots of " + equations.length
+                + " equations, " + processors + " processors");
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            double best = 0.0d;
+            long bytes = 0;
+            try {
+                for (int run = 0; run < 4; run++) {
+                    int plots = 200 * threads;
+                    int perThread = 200;
+                    AtomicLong written = new AtomicLong();
+                    List<Callable<Void>> tasks = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        tasks.add(() -> {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+                            for (int i = 0; i < perThread; i++) {
+                                out.reset();
+                                renderer.renderPng(viewport, list, out);
+                                written.addAndGet(out.size());
+                            }
+                            return null;
+                        });
+                    }
+                    long start = System.nanoTime();
+                    for (Future<Void> f : executor.invokeAll(tasks))
+                        f.get();
+                    double time = (System.nanoTime() - start) / 1e9d;
+                    //first run is warmup
+                    if (run > 0)
+                        best = Math.max(best, plots / time);
+                    bytes = written.get() / plots;
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                executor.shutdown();
+            }
+            System.out.printf("    %3d threads: %10.1f plots/s, %d bytes per PNG%n", threads, best, bytes);
+            if (threads == processors)
+                break;
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compares building taylor expansions from repeated symbolic derivatives, as taylorExpansion used to,
+     * against Taylor mode automatic differentiation
+     *
+     * @param s equation to be expanded
+     * @param ks numbers of terms to be measured
+     * @param symbolicLimit largest number of terms measured with symbolic derivatives, they grow too quickly past it
+     */
+    private static void bench_taylor(String s, int[] ks, int symbolicLimit) {
+        Equation equ = new Equation(s);
+        final double c = 0.5d;
+        System.out.println("Taylor expansion of " + abbreviate(s) + " at " + c);
+        for (int k : ks) {
+            if (k <= symbolicLimit) {
+                System.out.printf("    k = %3d  symbolic derivatives: %12.1f us%n", k, microseconds(() -> {
+                    Node derv = equ;
+                    for (int i = 0; i <= k; i++) {
+                        sink += derv.calculate(c);
+                        derv = derv.calculateDerivative();
+                    }
+                }));
+            }
+            Node expansion = equ.taylorExpansion(k, c);
+            System.out.printf("    k = %3d  taylor mode:          %12.1f us, %d instructions, error at %.2f: %.2e%n", k,
+                    microseconds(() -> sink += equ.taylorExpansion(k, c).calculate(c)),
+                    expansion.compile().getInstructionCount(), c + 0.1d,
+                    Math.abs(expansion.calculate(c + 0.1d) - equ.calculate(c + 0.1d)));
+        }
+        System.out.println();
+    }
+
+    /**
+     * @return average time of a call to r in microseconds, measured over about half a second after warmup
+     */
+    private static double microseconds(Runnable r) {
+        for (long end = System.nanoTime() + 200_000_000L; System.nanoTime() < end; )
+            r.run();
+        int calls = 0;
+        long start = System.nanoTime();
+        long time;
+        do {
+            r.run();
+            calls++;
+            time = System.nanoTime() - start;
+        } while (time < 500_000_000L);
+        return time / 1000.0d / calls;
+    }
+
+    private static void bench_batch(String s, int points) {
+        Equation equ = new Equation(s);
+        CompiledEquation compiled = equ.compile();
+        double[] xs = new double[4096];
+        double[] out = new double[xs.length];
+        for (int i = 0; i < xs.length; i++)
+            xs[i] = i * 0.001d;
+
+        System.out.println("Batch " + abbreviate(s) + (isVectorized() ? " (vector module present)" : " (scalar loops)"));
+
+        double best = 0.0d;
+        for (int run = 0; run < 8; run++) {
+            long start = System.nanoTime();
+            for (int done = 0; done < points; done += xs.length) {
+                compiled.calculate(xs, out);
+                sink += out[0];
+            }
+            long time = System.nanoTime() - start;
+            if (run >= 3)
+                best = Math.max(best, points / (time / 1000.0d));
+        }
+        System.out.printf("    Node.calculate:             %10.3f Mpoints/s%n", throughput(equ::calculate, points));
+        System.out.printf("    CompiledEquation.calculate: %10.3f Mpoints/s%n", throughput(compiled::calculate, points));
+        System.out.printf("    batch calculate:            %10.3f Mpoints/s%n%n", best);
+    }
+
+    private static boolean isVectorized() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Compares {@code Node.calculate} with the class generated by {@code Node.compileToBytecode}
+     *
+     * @param s equation to be parsed and compiled
+     * @param points number of x values calculated per run
+     */
+    private static void bench_bytecode(String s, int points) {
+        Equation equ = new Equation(s);
+        long start = System.nanoTime();
+        DoubleUnaryOperator generated = equ.compileToBytecode();
+        long time = System.nanoTime() - start;
+        System.out.println("Bytecode " + abbreviate(s) + " (generated in " + time / 1000 + " us)");
+
+        double tree = throughput(equ::calculate, points);
+        double flat = throughput(equ.compile(), points);
+        double bytecode = throughput(generated, points);
+        System.out.printf("    Node.calculate:             %10.3f Mpoints/s%n", tree);
+        System.out.printf("    CompiledEquation.calculate: %10.3f Mpoints/s%n", flat);
+        System.out.printf("    generated class:            %10.3f Mpoints/s (%.1fx)%n%n", bytecode, bytecode / tree);
+    }
+
+    /**
+     * Measures how many values of f can be calculated per second
+     *
+     * @param f function to be measured
+     * @param points number of x values calculated per run
+     * @return millions of points calculated per second, best of the measured runs
+     */
+    private static double throughput(DoubleUnaryOperator f, int points) {
+        double best = 0.0d;
+        for (int run = 0; run < 8; run++) {
+            long start = System.nanoTime();
+            double s = 0.0d;
+            for (int i = 0; i < points; i++)
+                s += f.applyAsDouble(i * 0.001d);
+            long time = System.nanoTime() - start;
+            sink += s;
+            //first runs are warmup
+            if (run >= 3)
+                best = Math.max(best, points / (time / 1000.0d));
+        }
+        return best;
+    }
+
+    /**
+     * Compares a simplified equation with the original at random x values in [-5, 5].
+     * Simplifying may remove a point where the original is undefined, such as x/x at 0,
+     * so only finite values of the original are compared
+     *
+     * @return number of x values where the relative difference is more than 1e-9
+     */
+    private static int mismatches(CompiledEquation original, CompiledEquation simplified) {
+        Random random = new Random(42);
+        int mismatches = 0;
+        for (int i = 0; i < 10_000; i++) {
+            double x = random.nextDouble() * 10.0d - 5.0d;
+            double exact = original.calculate(x);
+            //not finite values of the simplified equation fail the comparison
+            if (Double.isFinite(exact) && !(Math.abs(simplified.calculate(x) - exact) <= 1e-9 * (1 + Math.abs(exact))))
+                mismatches++;
+        }
+        return mismatches;
+    }
+
+    /**
+     * Generates a long equation made of many simple terms
+     *
+     * @param terms number of terms in the equation
+     * @return generated equation
+     */
+    static String generate(int terms) {
+        StringBuilder builder = new StringBuilder("x");
+        for (int i = 1; i <= terms; i++) {
+            switch (i % 4) {
+                case 0: builder.append("+sin(x)*").append(i); break;
+                case 1: builder.append("+x^").append(i % 5).append("/").append(i); break;
+                case 2: builder.append("+cos(x)*x"); break;
+                default: builder.append("+").append(i).append("/(x^2+").append(i).append(")"); break;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generates an equation by repeatedly nesting simple terms inside each other
+     *
+     * @param depth number of levels of nesting
+     * @return generated equation
+     */
+    static String generateDeep(int depth) {
+        String s = "x";
+        for (int i = 1; i <= depth; i++) {
+            switch (i % 4) {
+                case 0: s = "sin(" + s + ")*x+" + i; break;
+                case 1: s = "(" + s + ")/(" + i + "+x^2)"; break;
+                case 2: s = "cos(" + s + "-x)*" + i; break;
+                default: s = "(" + s + ")(x-" + i + ")"; break;
+            }
+        }
+        return s;
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() <= 40 ? s : s.substring(0, 37) + "...";
+    }
+
+}
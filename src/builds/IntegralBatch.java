@@ -0,0 +1,322 @@
+package builds;
+
+import core.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  Batch mode of {@link IntegralTool}, integrating every row of a file in one JVM
+ *
+ *  Each line of the input holds an equation followed by its starting and ending bound,
+ *  separated by whitespace, such as {@code sin(x^2) - 2x 0 3}. The input is read through
+ *  memory mapped windows and each distinct equation is parsed and compiled once.
+ *  Rows are integrated in blocks on a pool of worker threads, and the output has one line
+ *  for each input line, in the same order: the value, error estimate and number of
+ *  evaluations separated by tabs, "error" and a message for rows that cannot be integrated,
+ *  or an empty line for an empty one.
+ *  Rows per second, a summary of the time taken by each integral and the {@link CalculatorMetrics}
+ *  counters are printed at the end, the counters are also registered with JMX while the batch runs.
+ */
+final class IntegralBatch {
+
+    //rows integrated together by one worker
+    private static final int BLOCK = 4096;
+    //largest part of the input mapped at once, lines must be shorter
+    private static final long WINDOW = 1L << 30;
+
+    //_________Fields_________//
+    private final int threads;
+    //compiled equation, or the reason it cannot be parsed, for each distinct equation
+    private final Map<String, Object> equations = new HashMap<>();
+    private final Latencies latencies = new Latencies();
+    private long rows;
+
+    IntegralBatch(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads must be positive: " + threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the batch mode with the command line arguments after --batch
+     */
+    static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: integrate --batch [input file] [output file] [threads]\n");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 2) {
+            try {
+                threads = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads <= 0) {
+                System.out.println("Number of threads [" + args[2] + "] is not valid!\n");
+                return;
+            }
+        }
+
+        CalculatorMetrics.getDefault().register();
+        IntegralBatch batch = new IntegralBatch(threads);
+        long start = System.nanoTime();
+        try {
+            batch.run(Path.of(args[0]), Path.of(args[1]));
+        } catch (IOException e) {
+            System.out.println("Batch failed: " + e.getMessage() + "\n");
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d rows, %d distinct equations, %d threads in %.3f s: %.0f rows/s%n",
+                batch.rows, batch.equations.size(), threads, seconds, batch.rows / seconds);
+        System.out.println("Time per integral: " + batch.latencies);
+        System.out.println(CalculatorMetrics.getDefault());
+    }
+
+    /**
+     * Integrates every row of the input and writes the results to the output
+     *
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    void run(Path input, Path output) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "IntegralBatch");
+            t.setDaemon(true);
+            return t;
+        });
+        //blocks being integrated, oldest first, so results are written in input order
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output),
+                     StandardCharsets.UTF_8), 1 << 20)) {
+            Block block = new Block();
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                long length = Math.min(WINDOW, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) != '\n')
+                        continue;
+                    block.add(buffer, lineStart, i);
+                    lineStart = i + 1;
+                    if (block.count == BLOCK) {
+                        submit(pool, pending, block, out);
+                        block = new Block();
+                    }
+                }
+                if (last && lineStart < length)
+                    block.add(buffer, lineStart, (int) length);
+                else if (lineStart == 0 && !last)
+                    throw new IOException("Line at byte " + position + " is longer than " + WINDOW + " bytes");
+                position += last ? length : lineStart;
+            }
+            if (block.count > 0)
+                submit(pool, pending, block, out);
+            while (!pending.isEmpty())
+                write(pending.poll(), out);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands a full block to the pool, first writing the oldest block if enough are already pending
+     */
+    private void submit(ExecutorService pool, ArrayDeque<Future<Block>> pending, Block block, Writer out)
+            throws IOException {
+        if (pending.size() >= 2 * threads)
+            write(pending.poll(), out);
+        pending.add(pool.submit(block::integrate));
+    }
+
+    private void write(Future<Block> future, Writer out) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Integration failed", e.getCause());
+        }
+        out.append(block.output);
+        rows += block.rows;
+        latencies.add(block.latencies);
+    }
+
+    /**
+     * @return compiled equation, or the reason it cannot be used, parsing each distinct equation once
+     */
+    private Object equation(String s) {
+        Object equation = equations.get(s);
+        if (equation == null) {
+            try {
+                CompiledEquation compiled = new Equation(s).compile();
+                if (compiled.getVariableCount() > 1)
+                    equation = "Equation must only have the variable x";
+                else
+                    equation = compiled;
+            } catch (InvalidEquationException e) {
+                equation = e.getMessage() == null ? "Invalid equation" : e.getMessage();
+            }
+            equations.put(s, equation);
+        }
+        return equation;
+    }
+
+    /**
+     * Rows read from the input, integrated by one worker
+     */
+    private final class Block {
+        //compiled equation, reason the row cannot be integrated, or null for an empty line
+        final Object[] equations = new Object[BLOCK];
+        final double[] starts = new double[BLOCK], ends = new double[BLOCK];
+        int count, rows;
+
+        StringBuilder output;
+        Latencies latencies;
+
+        /**
+         * Reads the line from start to end, the line break excluded
+         */
+        void add(MappedByteBuffer buffer, int start, int end) {
+            int i = count++;
+            if (end > start && buffer.get(end - 1) == '\r')
+                end--;
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            String line = new String(bytes, StandardCharsets.UTF_8).strip();
+            if (line.isEmpty()) {
+                equations[i] = null;
+                return;
+            }
+            rows++;
+            //the bounds are the last two words, equations may contain spaces
+            int second = lastSpace(line, line.length());
+            int first = second < 0 ? -1 : lastSpace(line, second);
+            if (first < 0) {
+                equations[i] = "Expected an equation, a starting bound and an ending bound";
+                return;
+            }
+            String a = line.substring(first + 1, second).strip(), b = line.substring(second + 1);
+            try {
+                starts[i] = Double.parseDouble(a);
+            } catch (NumberFormatException e) {
+                equations[i] = "Starting bound [" + a + "] is not valid";
+                return;
+            }
+            try {
+                ends[i] = Double.parseDouble(b);
+            } catch (NumberFormatException e) {
+                equations[i] = "Ending bound [" + b + "] is not valid";
+                return;
+            }
+            equations[i] = equation(line.substring(0, first).strip());
+        }
+
+        /**
+         * @return index of the last whitespace before the word ending at end, -1 if there is none
+         */
+        private int lastSpace(String line, int end) {
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1)))
+                end--;
+            for (int i = end - 1; i >= 0; i--)
+                if (Character.isWhitespace(line.charAt(i)))
+                    return i;
+            return -1;
+        }
+
+        Block integrate() {
+            Integrator integrator = Integrator.getDefault();
+            output = new StringBuilder(count * 48);
+            latencies = new Latencies();
+            for (int i = 0; i < count; i++) {
+                Object equation = equations[i];
+                if (equation instanceof CompiledEquation) {
+                    long start = System.nanoTime();
+                    IntegrationResult result = integrator.integrate((CompiledEquation) equation, starts[i], ends[i]);
+                    latencies.record(System.nanoTime() - start);
+                    output.append(result.getValue()).append('\t').append(result.getErrorEstimate())
+                            .append('\t').append(result.getEvaluations());
+                } else if (equation != null) {
+                    output.append("error\t").append(equation);
+                }
+                output.append('\n');
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Histogram of times in nanoseconds, in buckets 1/8 of a power of two wide,
+     * so percentiles are within 9% of the exact value
+     */
+    private static final class Latencies {
+        private static final int STEPS = 8;
+        private final long[] counts = new long[64 * STEPS];
+        private long total, sum, max;
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 1);
+            int power = 63 - Long.numberOfLeadingZeros(nanos);
+            int step = power < 3 ? 0 : (int) ((nanos >>> (power - 3)) & (STEPS - 1));
+            counts[power * STEPS + step]++;
+            total++;
+            sum += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        void add(Latencies other) {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] += other.counts[i];
+            total += other.total;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * @return upper end of the bucket holding the fraction p of the times
+         */
+        private long percentile(double p) {
+            long rank = (long) Math.ceil(p * total), seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1)) {
+                    int power = i / STEPS, step = i % STEPS;
+                    long upper = power < 3 ? 2L << power : (1L << power) + ((step + 1L) << (power - 3));
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            if (total == 0)
+                return "no integrals";
+            return String.format("mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                    sum / 1e3 / total, percentile(0.5) / 1e3, percentile(0.9) / 1e3, percentile(0.99) / 1e3,
+                    percentile(0.999) / 1e3, max / 1e3);
+        }
+    }
+
+}
@@ -2,16 +2,25 @@ package builds;
 
 import core.*;
 
+import java.util.Arrays;
+
 /**
  *  Command line tool to quickly solve definite integrals
+ *
+ *  With --batch, integrates every row of an input file instead, see {@link IntegralBatch}
  */
 
 public class IntegralTool {
 
     public static void main(String[] args){
+        if(args.length > 0 && args[0].equals("--batch")){
+            IntegralBatch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if(args.length < 3){
             System.out.println("Too few arguments!\n" +
-                               "Usage: integrate [equation] [starting bound] [ending bound]\n");
+                               "Usage: integrate [equation] [starting bound] [ending bound]\n" +
+                               "       integrate --batch [input file] [output file] [threads]\n");
             return;
         }
         double start, end;
@@ -28,11 +37,14 @@ public class IntegralTool {
             System.out.println("Lower bound [" + args[2] + "] is not valid!\n");
             return;
         }
-        Equation equ = new Equation(args[0]);
-        double defIntegral = equ.definiteIntegral(start, end);
+        Equation equ = EquationCache.getDefault().get(args[0]);
+        IntegrationResult result = equ.integrate(start, end);
         System.out.println("Integral of " + args[0] + " from "
                 + args[1] + " to " + args[2] + ": " +
-                defIntegral);
+                result.getValue());
+        System.out.println("Estimated error: " + result.getErrorEstimate() + ", "
+                + result.getEvaluations() + " evaluations"
+                + (result.isConverged() ? "" : ", tolerance was not reached"));
     }
 
 }
@@ -3,7 +3,10 @@ package builds;
 import javax.swing.*;
 import java.awt.*;
 
+import core.CalculatorMetrics;
 import core.Equation;
+import core.EquationCache;
+import core.IntegrationResult;
 
 /**
  * Class ValueCalculator
@@ -177,11 +180,14 @@ class ValueCalculator {
         }
 
 
-        Equation equ = new Equation(equation.getText());
+        Equation equ = EquationCache.getDefault().get(equation.getText());
         yVal.setText(Double.toString(equ.calculate(v_x)));
         derivative.setText(Double.toString(equ.slopeAt(v_x)));
         l_integral.setText("Integral from " + a + " to " + b);
-        integral.setText(Double.toString(equ.definiteIntegral(v_a, v_b)));
+        IntegrationResult result = equ.integrate(v_a, v_b);
+        integral.setText(Double.toString(result.getValue()));
+        integral.setToolTipText("Estimated error " + result.getErrorEstimate() + ", "
+                + result.getEvaluations() + " evaluations");
     }
 
     private void integrateFrom(){
@@ -241,6 +247,7 @@ class ValueCalculator {
 
 
     public static void main(String[] args){
+        CalculatorMetrics.getDefault().register();
         new ValueCalculator();
     }
 
@@ -0,0 +1,379 @@
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Generates a JVM class for a {@code Node} tree
+ * <p>
+ *     The generated class implements {@link DoubleUnaryOperator}, its {@code applyAsDouble} method
+ *     is the tree written out as straight line arithmetic and {@code Math} calls, so the JIT
+ *     compiles it like hand written code. Classes are defined as hidden classes, which are
+ *     unloaded once the returned operator is no longer reachable.
+ * </p>
+ * <p>
+ *     Trees too large for a single JVM method fall back to a {@link CompiledEquation}.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Node#compileToBytecode()
+ */
+final class BytecodeCompiler {
+
+    //_________Opcodes_________//
+    private static final int DCONST_0 = 0x0e, DCONST_1 = 0x0f, LDC2_W = 0x14, DLOAD_1 = 0x27, ALOAD_0 = 0x2a;
+    private static final int DLOAD = 0x18, DSTORE = 0x39, DUP2 = 0x5c, WIDE = 0xc4;
+    private static final int DADD = 0x63, DMUL = 0x6b, DDIV = 0x6f;
+    private static final int DRETURN = 0xaf, RETURN = 0xb1, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    //class file limits
+    private static final int MAX_CODE = 65535;
+    private static final int MAX_POOL = 65535;
+    private static final int MAX_LOCALS = 65535;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    //_________Fields_________//
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<Object, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private int stackDepth, stackMax;
+
+    //operator nodes with more than one parent, and the local each one is stored in once calculated
+    private Set<Node> shared;
+    private final Map<Node, Integer> locals = new IdentityHashMap<>();
+    //this is local 0 and x takes locals 1 and 2, each stored double takes two more
+    private int localCount = 3;
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Generates and loads a class that calculates the given node
+     *
+     * @param node root of the tree to be compiled
+     * @return operator calculating the node, either a generated class or a CompiledEquation
+     *         if the tree could not be generated as a class
+     * @throws InvalidEquationException if the tree contains a value that cannot be calculated
+     * @throws IllegalStateException if the node has more than one variable
+     */
+    static DoubleUnaryOperator compile(Node node) throws InvalidEquationException {
+        node.compiled().requireSingleVariable();
+        byte[] bytes;
+        try {
+            bytes = new BytecodeCompiler().generate(node);
+        } catch (UnsupportedOperationException | StackOverflowError e) {
+            return node.compile();
+        }
+        if (bytes == null)
+            return node.compile();
+
+        try {
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+            return (DoubleUnaryOperator) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            if (e instanceof Error && !(e instanceof LinkageError))
+                throw (Error) e;
+            return node.compile();
+        }
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Writes the complete class file
+     *
+     * @param node root of the tree to be compiled
+     * @return bytes of the class file, or null if the tree is too large for a method
+     */
+    private byte[] generate(Node node) {
+        int thisClass = classRef("core/GeneratedEquation");
+        int superClass = classRef("java/lang/Object");
+        int operatorInterface = classRef("java/util/function/DoubleUnaryOperator");
+        int objectInit = methodRef("java/lang/Object", "<init>", "()V");
+        int initName = utf8("<init>");
+        int initType = utf8("()V");
+        int applyName = utf8("applyAsDouble");
+        int applyType = utf8("(D)D");
+        int codeName = utf8("Code");
+
+        //the double argument x is in local slot 1
+        shared = Node.sharedSubtrees(node);
+        emit(node);
+        code.write(DRETURN);
+        if (code.size() > MAX_CODE || stackMax * 2 > MAX_CODE || poolCount > MAX_POOL)
+            return null;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(pool.size() + code.size() + 256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+
+            //public final super
+            out.writeShort(0x0031);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(operatorInterface);
+            //no fields
+            out.writeShort(0);
+
+            out.writeShort(2);
+            //public GeneratedEquation() { super(); }
+            byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL,
+                    (byte) (objectInit >> 8), (byte) objectInit, (byte) RETURN};
+            writeMethod(out, initName, initType, codeName, 1, 1, init);
+            //public double applyAsDouble(double x)
+            writeMethod(out, applyName, applyType, codeName, stackMax * 2, localCount, code.toByteArray());
+
+            //no class attributes
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int type, int codeName,
+                                    int maxStack, int maxLocals, byte[] body) throws IOException {
+        //public
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        //no exception table or code attributes
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Recursively writes the instructions calculating node, leaving the value on top of the stack
+     *
+     * @param node Node to be compiled
+     */
+    private void emit(Node node) {
+        if (code.size() > MAX_CODE)
+            throw new UnsupportedOperationException("Method too large");
+
+        Integer local = locals.get(node);
+        if (local != null) {
+            local(DLOAD, local);
+            push();
+            return;
+        }
+
+        EdgeType type = node.type;
+        //functions of the form 1 / f(v) load the 1 before the argument
+        if (type == EdgeType.COSECANT || type == EdgeType.SECANT || type == EdgeType.COTANGENT
+                || type == EdgeType.ARCCOSECANT || type == EdgeType.ARCSECANT || type == EdgeType.ARCCOTANGENT) {
+            code.write(DCONST_1);
+            push();
+        }
+
+        switch (node.operator) {
+            case CONSTANT:
+                constant(node.constant);
+                break;
+            case VARIABLE:
+                code.write(DLOAD_1);
+                push();
+                break;
+            default:
+                emit(node.left);
+                emit(node.right);
+                switch (node.operator) {
+                    case ADD:      code.write(DADD); break;
+                    case MULTIPLY: code.write(DMUL); break;
+                    case DIVIDE:   code.write(DDIV); break;
+                    case POWER:    invokeMath("pow", "(DD)D"); break;
+                    default:
+                        throw new InvalidEquationException("Invalid operator <" + node.operator + ">");
+                }
+                stackDepth--;
+        }
+
+        switch (type) {
+            case SINE:           invokeMath("sin", "(D)D"); break;
+            case COSINE:         invokeMath("cos", "(D)D"); break;
+            case TANGENT:        invokeMath("tan", "(D)D"); break;
+            case COSECANT:       invokeMath("sin", "(D)D"); divide(); break;
+            case SECANT:         invokeMath("cos", "(D)D"); divide(); break;
+            case COTANGENT:      invokeMath("tan", "(D)D"); divide(); break;
+            case ARCSINE:        invokeMath("asin", "(D)D"); break;
+            case ARCCOSINE:      invokeMath("acos", "(D)D"); break;
+            case ARCTANGENT:     invokeMath("atan", "(D)D"); break;
+            case ARCCOSECANT:    divide(); invokeMath("asin", "(D)D"); break;
+            case ARCSECANT:      divide(); invokeMath("acos", "(D)D"); break;
+            case ARCCOTANGENT:   divide(); invokeMath("atan", "(D)D"); break;
+            case NATURAL_LOG:    invokeMath("log", "(D)D"); break;
+            case LOG_BASE_TEN:   invokeMath("log10", "(D)D"); break;
+            case ABSOLUTE_VALUE: invokeMath("abs", "(D)D"); break;
+            default:
+        }
+
+        //shared nodes are stored in a local the first time and loaded after that
+        if (shared.contains(node) && localCount + 2 <= MAX_LOCALS) {
+            code.write(DUP2);
+            push();
+            local(DSTORE, localCount);
+            stackDepth--;
+            locals.put(node, localCount);
+            localCount += 2;
+        }
+    }
+
+    /**
+     * Writes a load or store of the double in the local at index
+     */
+    private void local(int opcode, int index) {
+        if (index > 255) {
+            code.write(WIDE);
+            code.write(opcode);
+            code.write(index >> 8);
+        } else {
+            code.write(opcode);
+        }
+        code.write(index);
+    }
+
+    private void constant(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.write(DCONST_0);
+        } else if (value == 1.0d) {
+            code.write(DCONST_1);
+        } else {
+            int index = doubleConstant(value);
+            code.write(LDC2_W);
+            code.write(index >> 8);
+            code.write(index);
+        }
+        push();
+    }
+
+    private void divide() {
+        code.write(DDIV);
+        stackDepth--;
+    }
+
+    private void invokeMath(String name, String descriptor) {
+        int index = methodRef("java/lang/Math", name, descriptor);
+        code.write(INVOKESTATIC);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+    //stack depth is counted in doubles, each takes two slots of the operand stack
+    private void push() {
+        stackDepth++;
+        if (stackDepth > stackMax)
+            stackMax = stackDepth;
+    }
+
+
+    //_________constant pool_________//
+
+    private int utf8(String s) {
+        Integer index = poolIndex.get(s);
+        if (index != null)
+            return index;
+        try {
+            poolOut.writeByte(1);
+            poolOut.writeUTF(s);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(s, 1);
+    }
+
+    private int classRef(String name) {
+        String key = "class " + name;
+        Integer index = poolIndex.get(key);
+        if (index != null)
+            return index;
+        int nameIndex = utf8(name);
+        write(7, nameIndex);
+        return add(key, 1);
+    }
+
+    private int methodRef(String owner, String name, String descriptor) {
+        String key = "method " + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null)
+            return index;
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        write(10, ownerIndex, nameAndType);
+        return add(key, 1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "type " + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null)
+            return index;
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        write(12, nameIndex, descriptorIndex);
+        return add(key, 1);
+    }
+
+    private int doubleConstant(double value) {
+        Long key = Double.doubleToRawLongBits(value);
+        Integer index = poolIndex.get(key);
+        if (index != null)
+            return index;
+        if (poolCount + 2 > MAX_POOL)
+            throw new UnsupportedOperationException("Too many constants");
+        try {
+            poolOut.writeByte(6);
+            poolOut.writeDouble(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        //doubles take two entries in the constant pool
+        return add(key, 2);
+    }
+
+    private void write(int tag, int... indexes) {
+        try {
+            poolOut.writeByte(tag);
+            for (int i : indexes)
+                poolOut.writeShort(i);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int add(Object key, int size) {
+        int index = poolCount;
+        poolIndex.put(key, index);
+        poolCount += size;
+        return index;
+    }
+
+}
@@ -0,0 +1,211 @@
+package core;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CalculatorMetrics Class
+ * <p>
+ *     Counters of the work done by the core package: equations parsed and compiled, integrals,
+ *     sums, derivatives and Taylor expansions, with the number of characters, evaluations and
+ *     terms they took and the total time spent in each. They are always kept and cost an
+ *     increment and a clock read per operation, never per calculated value.
+ * </p>
+ * <p>
+ *     The counters can be read directly, or through JMX after {@link #register()} adds them to the
+ *     platform MBean server. For the timing of single operations, Flight Recorder events named
+ *     {@code calculator.Parse}, {@code calculator.Compile}, {@code calculator.Integrate},
+ *     {@code calculator.Sum} and {@code calculator.Derivative} are emitted when a recording is running.
+ * </p>
+ *
+ * @see core.CalculatorMetricsMBean
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMBean {
+
+    private static final CalculatorMetrics DEFAULT = new CalculatorMetrics();
+
+    /**
+     * Name the counters are registered under
+     */
+    public static final String OBJECT_NAME = "calculator:type=Metrics";
+
+    //_________Fields_________//
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder parsedCharacters = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder integrals = new LongAdder();
+    private final LongAdder integralEvaluations = new LongAdder();
+    private final LongAdder unconvergedIntegrals = new LongAdder();
+    private final LongAdder integralNanos = new LongAdder();
+    private final LongAdder sums = new LongAdder();
+    private final LongAdder sumTerms = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAdder derivatives = new LongAdder();
+    private final LongAdder taylorExpansions = new LongAdder();
+    private final LongAdder derivativeNanos = new LongAdder();
+    private boolean registered;
+
+    private CalculatorMetrics() {
+    }
+
+    /**
+     * @return counters of every thread of the JVM
+     */
+    public static CalculatorMetrics getDefault() {
+        return DEFAULT;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Registers the counters with the platform MBean server under {@link #OBJECT_NAME},
+     * does nothing if they are already registered
+     *
+     * @throws IllegalStateException if the MBean server refuses them
+     */
+    public synchronized void register() {
+        if (registered)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be registered", e);
+        }
+        registered = true;
+    }
+
+    @Override
+    public long getParseCount() {
+        return parses.sum();
+    }
+
+    @Override
+    public long getParseFailureCount() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getParsedCharacters() {
+        return parsedCharacters.sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    @Override
+    public long getCompileCount() {
+        return compiles.sum();
+    }
+
+    @Override
+    public long getIntegralCount() {
+        return integrals.sum();
+    }
+
+    @Override
+    public long getIntegralEvaluations() {
+        return integralEvaluations.sum();
+    }
+
+    @Override
+    public long getUnconvergedIntegralCount() {
+        return unconvergedIntegrals.sum();
+    }
+
+    @Override
+    public long getIntegralNanos() {
+        return integralNanos.sum();
+    }
+
+    @Override
+    public long getSumCount() {
+        return sums.sum();
+    }
+
+    @Override
+    public long getSumTerms() {
+        return sumTerms.sum();
+    }
+
+    @Override
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    @Override
+    public long getDerivativeCount() {
+        return derivatives.sum();
+    }
+
+    @Override
+    public long getTaylorExpansionCount() {
+        return taylorExpansions.sum();
+    }
+
+    @Override
+    public long getDerivativeNanos() {
+        return derivativeNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{parses, parseFailures, parsedCharacters, parseNanos, compiles,
+                integrals, integralEvaluations, unconvergedIntegrals, integralNanos, sums, sumTerms, sumNanos,
+                derivatives, taylorExpansions, derivativeNanos})
+            counter.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CalculatorMetrics[parses=" + getParseCount() + ", compiles=" + getCompileCount() +
+                ", integrals=" + getIntegralCount() + ", integral evaluations=" + getIntegralEvaluations() +
+                ", sums=" + getSumCount() + ", sum terms=" + getSumTerms() +
+                ", derivatives=" + getDerivativeCount() + ", taylor expansions=" + getTaylorExpansionCount() + "]";
+    }
+
+
+    //_________package private methods_________//
+
+    void parsed(int length, boolean failed, long nanos) {
+        parses.increment();
+        if (failed)
+            parseFailures.increment();
+        parsedCharacters.add(length);
+        parseNanos.add(nanos);
+    }
+
+    void compiled() {
+        compiles.increment();
+    }
+
+    void integrated(long evaluations, boolean converged, long nanos) {
+        integrals.increment();
+        integralEvaluations.add(evaluations);
+        if (!converged)
+            unconvergedIntegrals.increment();
+        integralNanos.add(nanos);
+    }
+
+    void summed(long terms, long nanos) {
+        sums.increment();
+        sumTerms.add(terms);
+        sumNanos.add(nanos);
+    }
+
+    void derived(boolean taylor, long nanos) {
+        (taylor ? taylorExpansions : derivatives).increment();
+        derivativeNanos.add(nanos);
+    }
+
+}
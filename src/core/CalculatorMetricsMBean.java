@@ -0,0 +1,44 @@
+package core;
+
+/**
+ * Management interface of {@link CalculatorMetrics}, the attributes shown by JMX clients
+ * such as JConsole under {@code calculator:type=Metrics}
+ */
+public interface CalculatorMetricsMBean {
+
+    long getParseCount();
+
+    long getParseFailureCount();
+
+    long getParsedCharacters();
+
+    long getParseNanos();
+
+    long getCompileCount();
+
+    long getIntegralCount();
+
+    long getIntegralEvaluations();
+
+    long getUnconvergedIntegralCount();
+
+    long getIntegralNanos();
+
+    long getSumCount();
+
+    long getSumTerms();
+
+    long getSumNanos();
+
+    long getDerivativeCount();
+
+    long getTaylorExpansionCount();
+
+    long getDerivativeNanos();
+
+    /**
+     * Sets every counter to 0
+     */
+    void reset();
+
+}
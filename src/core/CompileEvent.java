@@ -0,0 +1,28 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * CompileEvent Class
+ * <p>
+ *     Flight Recorder event for compiling a tree into a {@link CompiledEquation}.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+@Name("calculator.Compile")
+@Label("Compile Equation")
+@Category("Calculator")
+@Description("A tree flattened into a postfix program")
+final class CompileEvent extends jdk.jfr.Event {
+
+    @Label("Nodes")
+    @Description("Number of distinct nodes of the tree, shared subtrees counted once")
+    int nodes;
+
+    @Label("Instructions")
+    int instructions;
+
+}
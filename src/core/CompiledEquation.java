@@ -0,0 +1,807 @@
+package core;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * CompiledEquation Class
+ * <p>
+ *     A flattened form of a {@code Node} tree. The tree is compiled once into a linear postfix
+ *     program of opcodes and a constant pool of pre-parsed doubles, which is then run by a small
+ *     stack machine. Evaluating the program does no string comparisons, no number parsing,
+ *     no recursion and no allocation, so it is meant for code that samples an equation at a large
+ *     number of points.
+ * </p>
+ * <p>
+ *     Results are the same as {@link Node#calculate(double)} for the same tree.
+ *     A CompiledEquation does not change after construction and can be shared between threads.
+ * </p>
+ * <p>
+ *     Each variable instruction takes the next entry of a pool of slots, the same way constants are
+ *     read, so an equation of several variables is calculated from an array of values indexed by slot
+ *     with {@link #calculate(double[])}. Methods taking a single x are for equations that use at most
+ *     slot 0, they ignore the pool.
+ * </p>
+ * <p>
+ *     Subtrees shared by several parents, which derivatives build, are calculated once: the first
+ *     time the value is stored in a register, and later uses load it from the register instead of
+ *     repeating the subtree. Constants and variables without a function are repeated, they cost
+ *     no more than a load. Registers follow the stack in the scratch arrays, each load and store
+ *     takes the next entry of a pool of register indexes.
+ * </p>
+ *
+ * @see core.Node
+ */
+public final class CompiledEquation implements DoubleUnaryOperator {
+
+    //_________Opcodes_________//
+    //pushes the next constant in the pool
+    static final byte CONSTANT = 0;
+    //pushes x, or the variable in the next slot of the pool
+    static final byte VARIABLE = 1;
+
+    static final byte ADD = 2;
+    static final byte MULTIPLY = 3;
+    static final byte DIVIDE = 4;
+    static final byte POWER = 5;
+
+    //pushes the register in the next entry of the register pool
+    static final byte LOAD = 6;
+    //copies the top of the stack into the register in the next entry of the pool, leaving it on the stack
+    static final byte STORE = 7;
+
+    //function opcodes are offset by the ordinal of their EdgeType
+    static final byte FUNCTION = 8;
+
+    private static final EdgeType[] TYPES = EdgeType.values();
+    private static final double LN_10 = Math.log(10.0d);
+
+    //scratch stack for each thread, grown to the largest program evaluated on that thread
+    private static final ThreadLocal<double[]> STACK = ThreadLocal.withInitial(() -> new double[16]);
+
+    //number of x values calculated together by the batch evaluator
+    static final int BLOCK = 256;
+    //scratch stack of BLOCK sized columns for each thread
+    private static final ThreadLocal<double[]> BATCH_STACK = ThreadLocal.withInitial(() -> new double[16 * BLOCK]);
+
+    //scratch stack of value and derivative pairs for each thread
+    private static final ThreadLocal<double[]> DUAL_STACK = ThreadLocal.withInitial(() -> new double[32]);
+
+    /**
+     * True when the {@code jdk.incubator.vector} module is present (run with
+     * {@code --add-modules jdk.incubator.vector}), batch arithmetic then uses SIMD instructions.
+     * Otherwise plain loops are used
+     */
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    //_________Fields_________//
+    private final byte[] code;
+    private final double[] constants;
+    private final int[] slots;
+    private final int[] registers;
+    private final int maxStack, variableCount, registerCount;
+
+    /**
+     * Compiles the given node into a postfix program
+     *
+     * @param node root of the tree to be compiled
+     * @throws InvalidEquationException if the tree contains a value that cannot be calculated
+     */
+    public CompiledEquation(Node node) throws InvalidEquationException {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+        int size = Node.countDistinct(node);
+        Program program = new Program(node, size);
+        program.emit(node);
+
+        this.code = Arrays.copyOf(program.code, program.codeLength);
+        this.constants = Arrays.copyOf(program.constants, program.constantsLength);
+        this.slots = Arrays.copyOf(program.slots, program.slotsLength);
+        this.registers = Arrays.copyOf(program.registers, program.registersLength);
+        this.maxStack = program.stackMax;
+        this.registerCount = program.registerCount;
+        int count = 0;
+        for (int slot : this.slots)
+            count = Math.max(count, slot + 1);
+        this.variableCount = count;
+
+        CalculatorMetrics.getDefault().compiled();
+        if (event.shouldCommit()) {
+            event.nodes = size;
+            event.instructions = program.codeLength;
+            event.commit();
+        }
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Calculates the value of the compiled equation at x
+     *
+     * @param x value of x to be calculated
+     * @return value of the equation at x
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    public double calculate(double x) {
+        requireSingleVariable();
+        double[] stack = STACK.get();
+        if (stack.length < maxStack + registerCount) {
+            stack = new double[maxStack + registerCount];
+            STACK.set(stack);
+        }
+
+        final byte[] code = this.code;
+        final double[] constants = this.constants;
+        final int[] registers = this.registers;
+        final int base = maxStack;
+        int sp = -1;
+        int c = 0, g = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT:
+                    stack[++sp] = constants[c++];
+                    break;
+                case VARIABLE:
+                    stack[++sp] = x;
+                    break;
+                case LOAD:
+                    stack[++sp] = stack[base + registers[g++]];
+                    break;
+                case STORE:
+                    stack[base + registers[g++]] = stack[sp];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    break;
+                case MULTIPLY:
+                    sp--;
+                    stack[sp] = stack[sp] * stack[sp + 1];
+                    break;
+                case DIVIDE:
+                    sp--;
+                    stack[sp] = stack[sp] / stack[sp + 1];
+                    break;
+                case POWER:
+                    sp--;
+                    stack[sp] = Math.pow(stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    stack[sp] = function(code[pc], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Same as {@link #calculate(double)}, so a CompiledEquation can be used as a DoubleUnaryOperator
+     *
+     * @param x value of x to be calculated
+     * @return value of the equation at x
+     */
+    @Override
+    public double applyAsDouble(double x) {
+        return calculate(x);
+    }
+
+    /**
+     * Calculates the value of the compiled equation, the value of the variable in slot i is
+     * {@code variables[i]}. Variables are read by index, no names are looked up
+     *
+     * @param variables values of the variables, at least {@link #getVariableCount()} long
+     * @return value of the equation
+     * @throws IllegalArgumentException if variables is too short
+     */
+    public double calculate(double[] variables) {
+        if (variables.length < variableCount)
+            throw new IllegalArgumentException("Expected " + variableCount + " variables, got " + variables.length);
+        double[] stack = STACK.get();
+        if (stack.length < maxStack + registerCount) {
+            stack = new double[maxStack + registerCount];
+            STACK.set(stack);
+        }
+
+        final byte[] code = this.code;
+        final double[] constants = this.constants;
+        final int[] slots = this.slots;
+        final int[] registers = this.registers;
+        final int base = maxStack;
+        int sp = -1;
+        int c = 0, v = 0, g = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT:
+                    stack[++sp] = constants[c++];
+                    break;
+                case VARIABLE:
+                    stack[++sp] = variables[slots[v++]];
+                    break;
+                case LOAD:
+                    stack[++sp] = stack[base + registers[g++]];
+                    break;
+                case STORE:
+                    stack[base + registers[g++]] = stack[sp];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    break;
+                case MULTIPLY:
+                    sp--;
+                    stack[sp] = stack[sp] * stack[sp + 1];
+                    break;
+                case DIVIDE:
+                    sp--;
+                    stack[sp] = stack[sp] / stack[sp + 1];
+                    break;
+                case POWER:
+                    sp--;
+                    stack[sp] = Math.pow(stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    stack[sp] = function(code[pc], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Calculates the values of the compiled equation for every x in xs
+     *
+     * @param xs values of x to be calculated
+     * @param out array the results are written to, at least as long as xs
+     */
+    public void calculate(double[] xs, double[] out) {
+        calculate(xs, 0, out, 0, xs.length);
+    }
+
+    /**
+     * <p>
+     * Calculates the values of the compiled equation for {@code length} values of x
+     * starting at {@code xs[offset]}, writing the results starting at {@code out[outOffset]}
+     * </p>
+     * <p>
+     * The x values are calculated in blocks, each instruction of the program is applied
+     * to a whole block at a time. Does not allocate once the calling thread has evaluated
+     * a program of this size, so buffers can be reused between calls.
+     * xs and out may be the same array, even with overlapping ranges. When the results would
+     * overwrite x values of a later block, the x values are copied first.
+     * </p>
+     *
+     * @param xs values of x to be calculated
+     * @param offset index of the first x value
+     * @param out array the results are written to
+     * @param outOffset index the first result is written to
+     * @param length number of values to be calculated
+     * @throws IndexOutOfBoundsException if a range is outside of its array
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    public void calculate(double[] xs, int offset, double[] out, int outOffset, int length) {
+        requireSingleVariable();
+        Objects.checkFromIndexSize(offset, length, xs.length);
+        Objects.checkFromIndexSize(outOffset, length, out.length);
+        //a block of results written ahead of its x values would overwrite x values not yet read
+        if (xs == out && outOffset > offset && outOffset < offset + length) {
+            xs = Arrays.copyOfRange(xs, offset, offset + length);
+            offset = 0;
+        }
+
+        double[] stack = BATCH_STACK.get();
+        if (stack.length < (maxStack + registerCount) * BLOCK) {
+            stack = new double[(maxStack + registerCount) * BLOCK];
+            BATCH_STACK.set(stack);
+        }
+
+        final byte[] code = this.code;
+        final double[] constants = this.constants;
+        final int[] registers = this.registers;
+        final int base = maxStack * BLOCK;
+
+        for (int start = 0; start < length; start += BLOCK) {
+            int n = Math.min(BLOCK, length - start);
+            //index of the column on top of the stack
+            int top = -BLOCK;
+            int c = 0, g = 0;
+
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc]) {
+                    case CONSTANT:
+                        top += BLOCK;
+                        Arrays.fill(stack, top, top + n, constants[c++]);
+                        break;
+                    case VARIABLE:
+                        top += BLOCK;
+                        System.arraycopy(xs, offset + start, stack, top, n);
+                        break;
+                    case LOAD:
+                        top += BLOCK;
+                        System.arraycopy(stack, base + registers[g++] * BLOCK, stack, top, n);
+                        break;
+                    case STORE:
+                        System.arraycopy(stack, top, stack, base + registers[g++] * BLOCK, n);
+                        break;
+                    case ADD:
+                        top -= BLOCK;
+                        add(stack, top, n);
+                        break;
+                    case MULTIPLY:
+                        top -= BLOCK;
+                        multiply(stack, top, n);
+                        break;
+                    case DIVIDE:
+                        top -= BLOCK;
+                        divide(stack, top, n);
+                        break;
+                    case POWER:
+                        top -= BLOCK;
+                        for (int i = top; i < top + n; i++)
+                            stack[i] = Math.pow(stack[i], stack[i + BLOCK]);
+                        break;
+                    default:
+                        function(code[pc], stack, top, n);
+                }
+            }
+            System.arraycopy(stack, 0, out, outOffset + start, n);
+        }
+    }
+
+    /**
+     * Calculates the exact derivative at x with forward mode automatic differentiation.
+     * Every value is carried together with its derivative through the program,
+     * so this costs about as much as one call to {@link #calculate(double)}
+     *
+     * @param x value of x at which the slope is calculated
+     * @return derivative of the equation at x
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    public double slopeAt(double x) {
+        requireSingleVariable();
+        return dual(x, null, 0)[1];
+    }
+
+    /**
+     * Calculates the exact partial derivative with respect to the variable in one slot,
+     * see {@link #slopeAt(double)}
+     *
+     * @param variables values of the variables, at least {@link #getVariableCount()} long
+     * @param slot slot of the variable the derivative is taken with respect to
+     * @return partial derivative of the equation
+     * @throws IllegalArgumentException if variables is too short
+     */
+    public double slopeAt(double[] variables, int slot) {
+        if (variables.length < variableCount)
+            throw new IllegalArgumentException("Expected " + variableCount + " variables, got " + variables.length);
+        return dual(0.0d, variables, slot)[1];
+    }
+
+    /**
+     * Calculates the value and the exact derivative at x in one pass, see {@link #slopeAt(double)}
+     *
+     * @param x value of x to be calculated
+     * @param out array of at least 2, the value is written to out[0] and the derivative to out[1]
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    public void calculateDual(double x, double[] out) {
+        requireSingleVariable();
+        double[] stack = dual(x, null, 0);
+        out[0] = stack[0];
+        out[1] = stack[1];
+    }
+
+    /**
+     * Calculates bounds holding every value of the equation for x between a and b with interval
+     * arithmetic. The bounds are guaranteed, rounding errors only widen them
+     *
+     * @param a one end of the range of x
+     * @param b other end of the range of x
+     * @return interval of the values over the range, empty if the equation is not defined anywhere in it
+     * @throws IllegalArgumentException if a or b is NaN
+     * @throws IllegalStateException if the equation has more than one variable
+     * @see IntervalArithmetic
+     */
+    public Interval calculateBounds(double a, double b) {
+        if (Double.isNaN(a) || Double.isNaN(b))
+            throw new IllegalArgumentException("Invalid range " + a + " to " + b);
+        return IntervalArithmetic.calculate(this, Math.min(a, b), Math.max(a, b));
+    }
+
+    /**
+     * @return number of instructions in the compiled program
+     */
+    public int getInstructionCount() {
+        return code.length;
+    }
+
+    /**
+     * @return number of stack slots needed to run the program
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * @return number of slots an array of variables needs, one more than the largest slot used
+     */
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    //program and pools for other evaluators in the core package, must not be modified
+    byte[] code() {
+        return code;
+    }
+
+    double[] constants() {
+        return constants;
+    }
+
+    int[] slots() {
+        return slots;
+    }
+
+    int[] registers() {
+        return registers;
+    }
+
+    /**
+     * @return number of registers holding the values of shared subtrees
+     */
+    int getRegisterCount() {
+        return registerCount;
+    }
+
+    /**
+     * @throws IllegalStateException if the equation uses a slot other than 0
+     */
+    void requireSingleVariable() {
+        if (variableCount > 1)
+            throw new IllegalStateException("Equation has " + variableCount + " variables, calculate it with an array of values");
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Applies the function with the given opcode to a value
+     *
+     * @param op function opcode
+     * @param v argument of the function
+     * @return value of the function
+     */
+    static double function(byte op, double v) {
+        switch (TYPES[op - FUNCTION]) {
+            case SINE:           return Math.sin(v);
+            case COSINE:         return Math.cos(v);
+            case TANGENT:        return Math.tan(v);
+            case COSECANT:       return 1.0d / Math.sin(v);
+            case SECANT:         return 1.0d / Math.cos(v);
+            case COTANGENT:      return 1.0d / Math.tan(v);
+            case ARCSINE:        return Math.asin(v);
+            case ARCCOSINE:      return Math.acos(v);
+            case ARCTANGENT:     return Math.atan(v);
+            case ARCCOSECANT:    return Math.asin(1.0d / v);
+            case ARCSECANT:      return Math.acos(1.0d / v);
+            case ARCCOTANGENT:   return Math.atan(1.0d / v);
+            case NATURAL_LOG:    return Math.log(v);
+            case LOG_BASE_TEN:   return Math.log10(v);
+            case ABSOLUTE_VALUE: return Math.abs(v);
+            default:             return v;
+        }
+    }
+
+    /**
+     * Runs the program on dual numbers, each stack entry is a value followed by its derivative
+     *
+     * @param x value of x to be calculated, used if variables is null
+     * @param variables values of the variables by slot, or null for a single variable
+     * @param slot slot of the variable the derivative is taken with respect to
+     * @return the scratch stack, holding the value at index 0 and the derivative at index 1
+     */
+    private double[] dual(double x, double[] variables, int slot) {
+        double[] stack = DUAL_STACK.get();
+        if (stack.length < (maxStack + registerCount) * 2) {
+            stack = new double[(maxStack + registerCount) * 2];
+            DUAL_STACK.set(stack);
+        }
+
+        final byte[] code = this.code;
+        final double[] constants = this.constants;
+        final int[] slots = this.slots;
+        final int[] registers = this.registers;
+        final int base = maxStack * 2;
+        //index of the value on top of the stack, its derivative is at top + 1
+        int top = -2;
+        int c = 0, s = 0, g = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT:
+                    top += 2;
+                    stack[top] = constants[c++];
+                    stack[top + 1] = 0.0d;
+                    break;
+                case VARIABLE:
+                    top += 2;
+                    if (variables == null) {
+                        stack[top] = x;
+                        stack[top + 1] = 1.0d;
+                    } else {
+                        int variable = slots[s++];
+                        stack[top] = variables[variable];
+                        stack[top + 1] = variable == slot ? 1.0d : 0.0d;
+                    }
+                    break;
+                case LOAD: {
+                    top += 2;
+                    int r = base + registers[g++] * 2;
+                    stack[top] = stack[r];
+                    stack[top + 1] = stack[r + 1];
+                    break;
+                }
+                case STORE: {
+                    int r = base + registers[g++] * 2;
+                    stack[r] = stack[top];
+                    stack[r + 1] = stack[top + 1];
+                    break;
+                }
+                case ADD:
+                    top -= 2;
+                    stack[top] += stack[top + 2];
+                    stack[top + 1] += stack[top + 3];
+                    break;
+                case MULTIPLY: {
+                    top -= 2;
+                    double a = stack[top], da = stack[top + 1], b = stack[top + 2], db = stack[top + 3];
+                    stack[top] = a * b;
+                    stack[top + 1] = da * b + a * db;
+                    break;
+                }
+                case DIVIDE: {
+                    top -= 2;
+                    double a = stack[top], da = stack[top + 1], b = stack[top + 2], db = stack[top + 3];
+                    double q = a / b;
+                    stack[top] = q;
+                    stack[top + 1] = (da - q * db) / b;
+                    break;
+                }
+                case POWER: {
+                    top -= 2;
+                    double a = stack[top], da = stack[top + 1], b = stack[top + 2], db = stack[top + 3];
+                    double v = Math.pow(a, b);
+                    double d = 0.0d;
+                    //constant exponents use the power rule so negative bases keep a derivative
+                    if (da != 0.0d)
+                        d += b * Math.pow(a, b - 1.0d) * da;
+                    if (db != 0.0d)
+                        d += v * Math.log(a) * db;
+                    stack[top] = v;
+                    stack[top + 1] = d;
+                    break;
+                }
+                default:
+                    dualFunction(code[pc], stack, top);
+            }
+        }
+        return stack;
+    }
+
+    /**
+     * Applies the function with the given opcode to the dual number at stack[top], stack[top + 1]
+     */
+    private static void dualFunction(byte op, double[] stack, int top) {
+        double v = stack[top], d = stack[top + 1];
+        double value, slope;
+        switch (TYPES[op - FUNCTION]) {
+            case SINE:
+                value = Math.sin(v);
+                slope = Math.cos(v) * d;
+                break;
+            case COSINE:
+                value = Math.cos(v);
+                slope = -Math.sin(v) * d;
+                break;
+            case TANGENT:
+                value = Math.tan(v);
+                slope = (1.0d + value * value) * d;
+                break;
+            case COSECANT: {
+                double sin = Math.sin(v);
+                value = 1.0d / sin;
+                slope = -Math.cos(v) / (sin * sin) * d;
+                break;
+            }
+            case SECANT: {
+                double cos = Math.cos(v);
+                value = 1.0d / cos;
+                slope = Math.sin(v) / (cos * cos) * d;
+                break;
+            }
+            case COTANGENT: {
+                double sin = Math.sin(v);
+                value = 1.0d / Math.tan(v);
+                slope = -d / (sin * sin);
+                break;
+            }
+            case ARCSINE:
+                value = Math.asin(v);
+                slope = d / Math.sqrt(1.0d - v * v);
+                break;
+            case ARCCOSINE:
+                value = Math.acos(v);
+                slope = -d / Math.sqrt(1.0d - v * v);
+                break;
+            case ARCTANGENT:
+                value = Math.atan(v);
+                slope = d / (1.0d + v * v);
+                break;
+            case ARCCOSECANT:
+                value = Math.asin(1.0d / v);
+                slope = -d / (v * v * Math.sqrt(1.0d - 1.0d / (v * v)));
+                break;
+            case ARCSECANT:
+                value = Math.acos(1.0d / v);
+                slope = d / (v * v * Math.sqrt(1.0d - 1.0d / (v * v)));
+                break;
+            case ARCCOTANGENT:
+                value = Math.atan(1.0d / v);
+                slope = -d / (v * v + 1.0d);
+                break;
+            case NATURAL_LOG:
+                value = Math.log(v);
+                slope = d / v;
+                break;
+            case LOG_BASE_TEN:
+                value = Math.log10(v);
+                slope = d / (v * LN_10);
+                break;
+            case ABSOLUTE_VALUE:
+                value = Math.abs(v);
+                slope = Math.signum(v) * d;
+                break;
+            default:
+                return;
+        }
+        stack[top] = value;
+        stack[top + 1] = slope;
+    }
+
+    /**
+     * Applies the function with the given opcode to a column of the batch stack
+     *
+     * @param op function opcode
+     * @param stack batch stack
+     * @param column index of the first value in the column
+     * @param n number of values in the column
+     */
+    private static void function(byte op, double[] stack, int column, int n) {
+        if (VECTORIZED && TYPES[op - FUNCTION] == EdgeType.ABSOLUTE_VALUE) {
+            VectorKernels.abs(stack, column, n);
+            return;
+        }
+        for (int i = column; i < column + n; i++)
+            stack[i] = function(op, stack[i]);
+    }
+
+    //the column at index a is combined with the column following it, the result is stored in a
+
+    private static void add(double[] stack, int a, int n) {
+        if (VECTORIZED) {
+            VectorKernels.add(stack, a, stack, a + BLOCK, n);
+            return;
+        }
+        for (int i = a; i < a + n; i++)
+            stack[i] += stack[i + BLOCK];
+    }
+
+    private static void multiply(double[] stack, int a, int n) {
+        if (VECTORIZED) {
+            VectorKernels.multiply(stack, a, stack, a + BLOCK, n);
+            return;
+        }
+        for (int i = a; i < a + n; i++)
+            stack[i] *= stack[i + BLOCK];
+    }
+
+    private static void divide(double[] stack, int a, int n) {
+        if (VECTORIZED) {
+            VectorKernels.divide(stack, a, stack, a + BLOCK, n);
+            return;
+        }
+        for (int i = a; i < a + n; i++)
+            stack[i] /= stack[i + BLOCK];
+    }
+
+    /**
+     * Buffers the program is written into while compiling, kept out of the compiled equation
+     * so all of its fields are final and it can be shared between threads once constructed
+     */
+    private static final class Program {
+        final byte[] code;
+        final double[] constants;
+        final int[] slots, registers;
+        int codeLength, constantsLength, slotsLength, registersLength, stackDepth, stackMax, registerCount;
+
+        //nodes reached from more than one parent, calculated once and kept in a register
+        private final Set<Node> shared;
+        //register of each shared node already calculated
+        private final Map<Node, Integer> stored = new IdentityHashMap<>();
+
+        /**
+         * @param root root of the tree to be compiled
+         * @param size number of distinct nodes of the tree
+         */
+        Program(Node root, int size) {
+            //a tree of size nodes has fewer than 2 * size edges, each use of a shared node is one load,
+            //each use of a constant or variable without a function is emitted again
+            code = new byte[size * 9 + 2];
+            constants = new double[size * 2 + 1];
+            slots = new int[size * 2 + 1];
+            registers = new int[size * 3];
+            shared = Node.sharedSubtrees(root);
+        }
+
+        /**
+         * Recursively writes the postfix program for node
+         *
+         * @param node Node to be compiled
+         */
+        void emit(Node node) {
+            Integer register = stored.get(node);
+            if (register != null) {
+                registers[registersLength++] = register;
+                code[codeLength++] = LOAD;
+                push();
+                return;
+            }
+
+            if (node.operator == Operator.VARIABLE) {
+                slots[slotsLength++] = node.slot;
+                code[codeLength++] = VARIABLE;
+                push();
+            } else if (node.operator == Operator.CONSTANT) {
+                constants[constantsLength++] = node.constant;
+                code[codeLength++] = CONSTANT;
+                push();
+            } else {
+                emit(node.left);
+                emit(node.right);
+                code[codeLength++] = operator(node.operator);
+                stackDepth--;
+            }
+
+            if (node.type != EdgeType.DEFAULT)
+                code[codeLength++] = (byte) (FUNCTION + node.type.ordinal());
+
+            if (shared.contains(node)) {
+                stored.put(node, registerCount);
+                registers[registersLength++] = registerCount++;
+                code[codeLength++] = STORE;
+            }
+        }
+
+        private void push() {
+            stackDepth++;
+            if (stackDepth > stackMax)
+                stackMax = stackDepth;
+        }
+    }
+
+    private static byte operator(Operator operator) throws InvalidEquationException {
+        switch (operator) {
+            case ADD:      return ADD;
+            case MULTIPLY: return MULTIPLY;
+            case DIVIDE:   return DIVIDE;
+            case POWER:    return POWER;
+            default:
+                throw new InvalidEquationException("Invalid operator <" + operator + ">");
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Samples a curve adaptively over a range of pixel columns and draws it
+ * <p>
+ *     The curve is first sampled every few columns. Segments are then halved where a sample is more
+ *     than half a pixel away from the line through its neighbours, where the curve leaves its domain
+ *     or where it changes by more than the height of the image, until they are a quarter of a column
+ *     wide. Straight parts cost a fraction of an evaluation per column and bends get sub pixel detail.
+ *     Segments above or below the image are not refined, and features narrower than the first spacing
+ *     between samples can be missed.
+ * </p>
+ * <p>
+ *     A segment of the narrowest width that still changes by more than a couple of rows is bisected
+ *     towards its larger half. On a continuous curve the change shrinks with every bisection; if it
+ *     does not, the segment holds a pole or a jump and the curve is broken there instead of being
+ *     joined by a vertical line.
+ *     Edges of the domain are bisected the same way so the curve reaches them.
+ * </p>
+ * <p>
+ *     The number of evaluations is capped to bound the time of a render. Once the cap is reached
+ *     refinement stops, segments further right are drawn from the samples already taken and joined
+ *     without checking for discontinuities. A sampler reuses its buffers, it is not thread safe.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Rasterizer
+ */
+final class CurveSampler {
+
+    //evaluations per column of the image allowed by default
+    static final int DEFAULT_EVALUATIONS_PER_COLUMN = 8;
+
+    //columns between the first samples
+    private static final int STEP = 4;
+    //narrowest segment, in columns
+    private static final double MIN_WIDTH = 0.25d;
+    //largest distance, in pixels, of a sample from the line through its neighbours
+    private static final double TOLERANCE = 0.5d;
+    //change, in rows, of a segment checked for a discontinuity
+    private static final double JUMP = 2.0d;
+    private static final int BISECTIONS = 12;
+    //fraction of the change of a segment below which its larger half is continuous
+    private static final double SHRINK = 0.8d;
+
+    //_________Fields_________//
+    private CompiledEquation equation;
+    private boolean slope;
+    private Viewport viewport;
+    private int width, height, evaluations, maxEvaluations;
+
+    //samples in order of column, a NaN row is not drawn and breaks the curve
+    private double[] columns = new double[64], rows = new double[64];
+    private int count;
+    private double[] nextColumns = new double[64], nextRows = new double[64];
+    private boolean[] split = new boolean[64];
+    private double[] xs = new double[64], ys = new double[64];
+
+
+    /**
+     * Samples the equation, or its slope, between two columns of an image
+     *
+     * @param equation compiled equation to be sampled
+     * @param slope true to sample the slope instead of the value
+     * @param viewport part of the plane shown by the image
+     * @param width width of the image in pixels
+     * @param height height of the image in pixels
+     * @param from first column sampled
+     * @param to last column sampled
+     * @param maxEvaluations largest number of evaluations, at least two are always used
+     * @return number of evaluations used
+     */
+    int sample(CompiledEquation equation, boolean slope, Viewport viewport, int width, int height,
+               double from, double to, int maxEvaluations) {
+        this.equation = equation;
+        this.slope = slope;
+        this.viewport = viewport;
+        this.width = width;
+        this.height = height;
+        this.maxEvaluations = Math.max(2, maxEvaluations);
+        evaluations = 0;
+
+        int n = 1;
+        if (to > from)
+            n = (int) Math.max(2, Math.min(Math.ceil((to - from) / STEP) + 1, this.maxEvaluations));
+        columns = ensure(columns, n);
+        rows = ensure(rows, n);
+        for (int i = 0; i < n; i++)
+            columns[i] = n == 1 ? from : from + (to - from) * i / (n - 1);
+        evaluate(columns, rows, n);
+        count = n;
+
+        refine();
+        findBreaks();
+        return evaluations;
+    }
+
+    /**
+     * Draws the last sampled curve, neighbouring samples are joined by lines
+     *
+     * @param pixels buffer of width * height pixels, row by row
+     * @param color rgb color
+     */
+    void draw(int[] pixels, int color) {
+        Rasterizer.drawPolyline(pixels, width, 0, 0, width - 1, height - 1, columns, rows, count, 0.0d, 0.0d, color);
+    }
+
+    /**
+     * @return number of points of the last sampled curve
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return columns of the points of the last sampled curve, NaN at breaks, valid until the next sample
+     */
+    double[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return rows of the points of the last sampled curve, NaN at breaks and outside the domain,
+     * valid until the next sample
+     */
+    double[] getRows() {
+        return rows;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Halves every segment that needs it, all midpoints of a pass are calculated in one batch
+     */
+    private void refine() {
+        while (evaluations < maxEvaluations) {
+            int budget = maxEvaluations - evaluations;
+            split = count > split.length ? new boolean[Math.max(count, 2 * split.length)] : split;
+            int splits = 0;
+            for (int i = 0; i + 1 < count; i++) {
+                split[i] = splits < budget && columns[i + 1] - columns[i] >= 2.0d * MIN_WIDTH && needsSplit(i);
+                if (split[i])
+                    splits++;
+            }
+            if (splits == 0)
+                return;
+
+            double[] midColumns = ensure(nextColumns, splits);
+            double[] midRows = ensure(nextRows, splits);
+            for (int i = 0, k = 0; i + 1 < count; i++)
+                if (split[i])
+                    midColumns[k++] = 0.5d * (columns[i] + columns[i + 1]);
+            evaluate(midColumns, midRows, splits);
+
+            //merge, in place from the right
+            int j = count + splits;
+            columns = ensure(columns, j);
+            rows = ensure(rows, j);
+            for (int i = count - 1, k = splits; i >= 0; i--) {
+                if (i + 1 < count && split[i]) {
+                    k--;
+                    columns[--j] = midColumns[k];
+                    rows[j] = midRows[k];
+                }
+                columns[--j] = columns[i];
+                rows[j] = rows[i];
+            }
+            count += splits;
+            nextColumns = midColumns;
+            nextRows = midRows;
+        }
+    }
+
+    /**
+     * @param i index of the left sample of the segment
+     * @return true if the segment bends, leaves the domain or may hold a discontinuity
+     */
+    private boolean needsSplit(int i) {
+        double a = rows[i], b = rows[i + 1];
+        if (Double.isFinite(a) != Double.isFinite(b))
+            return true;
+        if (!Double.isFinite(a) || hidden(a, b))
+            return false;
+        if (Math.abs(b - a) > height)
+            return true;
+        return (i > 0 && distance(i - 1, i, i + 1) > TOLERANCE)
+                || (i + 2 < count && distance(i, i + 1, i + 2) > TOLERANCE);
+    }
+
+    /**
+     * Bisects domain edges and steep segments, and writes the samples with breaks at discontinuities
+     */
+    private void findBreaks() {
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            nextColumns = ensure(nextColumns, j + 4);
+            nextRows = ensure(nextRows, j + 4);
+            nextColumns[j] = columns[i];
+            nextRows[j++] = rows[i];
+            if (i + 1 == count)
+                break;
+
+            double ca = columns[i], cb = columns[i + 1];
+            double ra = rows[i], rb = rows[i + 1];
+            boolean finite = Double.isFinite(ra);
+            if (finite != Double.isFinite(rb)) {
+                //move the finite end up to the edge of the domain
+                for (int k = 0; k < BISECTIONS && evaluations < maxEvaluations; k++) {
+                    double cm = 0.5d * (ca + cb), rm = evaluate(cm);
+                    if (Double.isFinite(rm) == finite) {
+                        ca = cm;
+                        ra = rm;
+                    } else {
+                        cb = cm;
+                        rb = rm;
+                    }
+                }
+                nextColumns[j] = finite ? ca : cb;
+                nextRows[j++] = finite ? ra : rb;
+            } else if (finite && cb - ca < 2.0d * MIN_WIDTH && !hidden(ra, rb) && Math.abs(rb - ra) > JUMP) {
+                double jump = Math.abs(rb - ra), change = jump;
+                boolean broken = false;
+                int k = 0;
+                for (; k < BISECTIONS && evaluations < maxEvaluations; k++) {
+                    double cm = 0.5d * (ca + cb), rm = evaluate(cm);
+                    if (!Double.isFinite(rm)) {
+                        broken = true;
+                        break;
+                    }
+                    double left = Math.abs(rm - ra), right = Math.abs(rb - rm);
+                    if (left >= right) {
+                        cb = cm;
+                        rb = rm;
+                    } else {
+                        ca = cm;
+                        ra = rm;
+                    }
+                    //a pole or a jump stays in the larger half with all of the change
+                    if (Math.max(left, right) < SHRINK * change)
+                        break;
+                    change = Math.max(left, right);
+                }
+                if (broken || (k == BISECTIONS && Math.abs(rb - ra) >= jump)) {
+                    nextColumns[j] = ca;
+                    nextRows[j++] = ra;
+                    nextColumns[j] = Double.NaN;
+                    nextRows[j++] = Double.NaN;
+                    nextColumns[j] = cb;
+                    nextRows[j++] = rb;
+                }
+            }
+        }
+
+        double[] c = columns, r = rows;
+        columns = nextColumns;
+        rows = nextRows;
+        nextColumns = c;
+        nextRows = r;
+        count = j;
+    }
+
+    /**
+     * @return true if both rows are on the same side outside of the image
+     */
+    private boolean hidden(double a, double b) {
+        return (a < -1.0d && b < -1.0d) || (a > height && b > height);
+    }
+
+    /**
+     * @return distance, in pixels, of sample p from the line through samples a and b
+     */
+    private double distance(int a, int p, int b) {
+        if (!Double.isFinite(rows[a]) || !Double.isFinite(rows[b]))
+            return 0.0d;
+        double dx = columns[b] - columns[a], dy = rows[b] - rows[a];
+        double cross = (columns[p] - columns[a]) * dy - (rows[p] - rows[a]) * dx;
+        return Math.abs(cross) / Math.hypot(dx, dy);
+    }
+
+    /**
+     * Calculates the rows of the curve at n columns
+     */
+    private void evaluate(double[] at, double[] out, int n) {
+        xs = ensure(xs, n);
+        ys = ensure(ys, n);
+        for (int i = 0; i < n; i++)
+            xs[i] = viewport.getX(at[i], width);
+        if (slope) {
+            for (int i = 0; i < n; i++)
+                ys[i] = equation.slopeAt(xs[i]);
+        } else {
+            equation.calculate(xs, 0, ys, 0, n);
+        }
+        for (int i = 0; i < n; i++)
+            out[i] = viewport.getRow(ys[i], height);
+        evaluations += n;
+    }
+
+    private double evaluate(double column) {
+        double x = viewport.getX(column, width);
+        evaluations++;
+        return viewport.getRow(slope ? equation.slopeAt(x) : equation.calculate(x), height);
+    }
+
+    private static double[] ensure(double[] a, int length) {
+        return a.length >= length ? a : Arrays.copyOf(a, Math.max(length, 2 * a.length));
+    }
+
+}
@@ -0,0 +1,37 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * DerivativeEvent Class
+ * <p>
+ *     Flight Recorder event for building the tree of a derivative or of a Taylor expansion.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+@Name("calculator.Derivative")
+@Label("Derivative or Taylor Expansion")
+@Category("Calculator")
+@Description("The tree of a derivative or of a Taylor expansion built from an equation")
+final class DerivativeEvent extends jdk.jfr.Event {
+
+    @Label("Kind")
+    @Description("DERIVATIVE or TAYLOR")
+    String kind;
+
+    @Label("Order")
+    @Description("Last term of a Taylor expansion, 1 for a derivative")
+    int order;
+
+    @Label("Nodes")
+    @Description("Number of distinct nodes of the equation")
+    int nodes;
+
+    @Label("Result Nodes")
+    @Description("Number of distinct nodes of the result")
+    int resultNodes;
+
+}
@@ -11,16 +11,16 @@ public enum EdgeType {
     SINE(new String[]{"sin", "sine" }),
     COSINE(new String[]{"cos", "cosine"}),
     TANGENT(new String[]{"tan", "tangent"}),
-    COSECANT(new String[]{"cos", "cosecant"}),
+    COSECANT(new String[]{"csc", "cosecant"}),
     SECANT(new String[]{"sec", "secant"}),
     COTANGENT(new String[]{"cot", "cotangent"}),
 
     ARCSINE(new String[]{"arcsin", "arcsine", "asine", "asin"}),
     ARCCOSINE(new String[]{"arccos", "arccosine", "acosine", "acos"}),
-    ARCTANGENT(new String[]{"arctan", "arctangnet", "atangent", "atan"}),
+    ARCTANGENT(new String[]{"arctan", "arctangent", "atangent", "atan"}),
     ARCCOSECANT(new String[]{"arccsc", "arccosecant", "acosecant", "acsc"}),
     ARCSECANT(new String[]{"arcsec", "arcsecant", "asecant", "asec"}),
-    ARCCOTANGENT(new String[]{"arctan", "arctangent", "atangent", "atan"}),
+    ARCCOTANGENT(new String[]{"arccot", "arccotangent", "acotangent", "acot"}),
 
     NATURAL_LOG(new String[]{"ln"}),
     LOG_BASE_TEN(new String[]{"log"}),
@@ -48,6 +48,13 @@ public enum EdgeType {
         throw new InvalidEquationException("Invalid token <" + token + ">");
     }
 
+    /**
+     * @return every name the parser recognizes for this function
+     */
+    String[] getIdentifiers() {
+        return identifiers.clone();
+    }
+
     @Override
     public String toString() {
         return this.identifiers[0];
@@ -0,0 +1,227 @@
+package core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EquationCache Class
+ * <p>
+ *     A bounded, thread safe cache of parsed equations keyed on their normalized text,
+ *     so an equation that is entered many times is only parsed once.
+ *     Text is normalized by trimming it, replacing each run of whitespace by one space and
+ *     converting to lowercase, so {@code " 2  X"} and {@code "2 x"} share one entry. Whitespace is
+ *     kept because it separates tokens, {@code "2 3"} is 2 times 3, not 23.
+ * </p>
+ * <p>
+ *     The cache holds at most {@code maxEntries} equations and at most {@code maxWeight}
+ *     characters of normalized text. When either limit is passed the least recently used
+ *     equations are evicted. Equations are parsed outside of the cache's lock, so a slow parse
+ *     does not block other threads.
+ * </p>
+ * <p>
+ *     Returned equations are shared between every caller, they must not be modified.
+ *     The public methods of Equation and CompiledEquation never modify them.
+ * </p>
+ *
+ * @see core.Equation
+ * @see core.CompiledEquation
+ */
+public final class EquationCache {
+
+    private static final EquationCache DEFAULT = new EquationCache(1024, 1L << 20);
+
+    //_________Fields_________//
+    private final int maxEntries;
+    private final long maxWeight;
+    //access ordered, the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maxEntries largest number of equations held at once
+     * @param maxWeight largest total length, in characters, of the normalized text of held equations
+     * @throws IllegalArgumentException if either limit is not positive
+     */
+    public EquationCache(int maxEntries, long maxWeight) {
+        if (maxEntries <= 0 || maxWeight <= 0)
+            throw new IllegalArgumentException("Cache limits must be positive");
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return cache shared by the builds, holding up to 1024 equations or 1M characters
+     */
+    public static EquationCache getDefault() {
+        return DEFAULT;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Returns the parsed equation for the text, parsing it if it is not in the cache
+     *
+     * @param equation String of the equation
+     * @return shared parsed Equation
+     * @throws InvalidEquationException if the text is not a valid equation, invalid text is not cached
+     */
+    public Equation get(String equation) throws InvalidEquationException {
+        return entry(equation).equation;
+    }
+
+    /**
+     * Returns the compiled form of the equation for the text, parsing and compiling it
+     * if it is not in the cache
+     *
+     * @param equation String of the equation
+     * @return shared CompiledEquation
+     * @throws InvalidEquationException if the text is not a valid equation, invalid text is not cached
+     */
+    public CompiledEquation getCompiled(String equation) throws InvalidEquationException {
+        return entry(equation).equation.compiled();
+    }
+
+    /**
+     * Removes every equation from the cache. Counters are not reset
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return number of equations currently in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return total length of the normalized text of the equations currently in the cache
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return number of requests that found their equation in the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of requests that had to parse their equation
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of equations removed to stay within the cache limits
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return fraction of requests that were hits, 0 if there were no requests
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0d : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "EquationCache[size=" + size() + ", weight=" + getWeight() +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * Trims whitespace, replaces each run of whitespace inside the text by one space
+     * and converts to lowercase
+     *
+     * @param equation String of the equation
+     * @return normalized String used as the key of the cache
+     */
+    static String normalize(String equation) {
+        StringBuilder builder = new StringBuilder(equation.length());
+        boolean space = false;
+        for (int i = 0; i < equation.length(); i++) {
+            char c = equation.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = builder.length() > 0;
+                continue;
+            }
+            if (space)
+                builder.append(' ');
+            space = false;
+            builder.append(Character.toLowerCase(c));
+        }
+        return builder.toString();
+    }
+
+
+    //_________private methods_________//
+
+    private Entry entry(String equation) throws InvalidEquationException {
+        String key = normalize(equation);
+
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                hits.increment();
+                return e;
+            }
+        }
+
+        misses.increment();
+        Entry parsed = new Entry(new Equation(key), key.length());
+
+        synchronized (this) {
+            //another thread may have parsed the same equation in the meantime
+            Entry e = entries.putIfAbsent(key, parsed);
+            if (e != null)
+                return e;
+
+            weight += parsed.weight;
+            evict();
+        }
+        return parsed;
+    }
+
+    //must be called while holding the lock
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        //the newest entry is always kept, even if it is heavier than maxWeight
+        while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+            Entry e = iterator.next().getValue();
+            iterator.remove();
+            weight -= e.weight;
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+        final Equation equation;
+        final int weight;
+
+        Entry(Equation equation, int weight) {
+            this.equation = equation;
+            this.weight = weight;
+        }
+    }
+
+}
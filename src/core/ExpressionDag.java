@@ -0,0 +1,274 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * ExpressionDag Class
+ * <p>
+ *     Hash-consed form of a {@code Node} tree. Structurally identical subtrees, such as the copies
+ *     of {@code left} and {@code right} made by the product and quotient rules in
+ *     {@link Node#calculateDerivative()}, are interned into a single node of a directed acyclic graph.
+ *     Calculating a value computes each distinct node once, so shared subexpressions are not
+ *     calculated again for every place they appear in the tree.
+ * </p>
+ * <p>
+ *     Nodes are stored in arrays in an order where every node comes after its operands.
+ *     A variable has no operands, its slot is stored in place of the left operand, so only
+ *     variables of the same slot are interned together.
+ *     An ExpressionDag does not change after construction and can be shared between threads.
+ * </p>
+ *
+ * @see core.Node#toDag()
+ */
+public final class ExpressionDag {
+
+    //node kinds, functions are stored separately as a CompiledEquation function opcode
+    private static final byte CONSTANT = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte ADD = 2;
+    private static final byte MULTIPLY = 3;
+    private static final byte DIVIDE = 4;
+    private static final byte POWER = 5;
+
+    //values of every node, for each thread
+    private static final ThreadLocal<double[]> REGISTERS = ThreadLocal.withInitial(() -> new double[64]);
+
+    //_________Fields_________//
+    private final byte[] kinds;
+    private final byte[] functions;
+    private final double[] constants;
+    private final int[] lefts, rights;
+    private final int size, variableCount;
+    private final long treeNodeCount;
+
+    /**
+     * Interns every subtree of node
+     *
+     * @param node root of the tree
+     */
+    public ExpressionDag(Node node) {
+        Builder builder = new Builder();
+        builder.intern(node);
+
+        size = builder.size;
+        kinds = Arrays.copyOf(builder.kinds, size);
+        functions = Arrays.copyOf(builder.functions, size);
+        constants = Arrays.copyOf(builder.constants, size);
+        lefts = Arrays.copyOf(builder.lefts, size);
+        rights = Arrays.copyOf(builder.rights, size);
+
+        //number of nodes a tree walk would visit, each node counts its operands' subtrees
+        long[] counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            counts[i] = 1;
+            if (kinds[i] >= ADD)
+                counts[i] = saturatedAdd(counts[i], saturatedAdd(counts[lefts[i]], counts[rights[i]]));
+        }
+        treeNodeCount = counts[size - 1];
+
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (kinds[i] == VARIABLE)
+                count = Math.max(count, lefts[i] + 1);
+        variableCount = count;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Calculates the value at x, computing each distinct node once
+     *
+     * @param x value of x to be calculated
+     * @return value of the expression at x
+     * @throws IllegalStateException if the expression has more than one variable
+     */
+    public double calculate(double x) {
+        if (variableCount > 1)
+            throw new IllegalStateException("Expression has " + variableCount + " variables, calculate it with an array of values");
+        double[] r = REGISTERS.get();
+        if (r.length < size) {
+            r = new double[size];
+            REGISTERS.set(r);
+        }
+
+        for (int i = 0; i < size; i++) {
+            double v;
+            switch (kinds[i]) {
+                case CONSTANT: v = constants[i]; break;
+                case VARIABLE: v = x; break;
+                case ADD:      v = r[lefts[i]] + r[rights[i]]; break;
+                case MULTIPLY: v = r[lefts[i]] * r[rights[i]]; break;
+                case DIVIDE:   v = r[lefts[i]] / r[rights[i]]; break;
+                default:       v = Math.pow(r[lefts[i]], r[rights[i]]); break;
+            }
+            if (functions[i] != 0)
+                v = CompiledEquation.function(functions[i], v);
+            r[i] = v;
+        }
+        return r[size - 1];
+    }
+
+    /**
+     * Calculates the value of an expression of several variables, computing each distinct node once
+     *
+     * @param variables values of the variables, the variable in slot i is {@code variables[i]}
+     * @return value of the expression
+     * @throws IllegalArgumentException if variables is shorter than the number of slots used
+     */
+    public double calculate(double[] variables) {
+        if (variables.length < variableCount)
+            throw new IllegalArgumentException("Expected " + variableCount + " variables, got " + variables.length);
+        double[] r = REGISTERS.get();
+        if (r.length < size) {
+            r = new double[size];
+            REGISTERS.set(r);
+        }
+
+        for (int i = 0; i < size; i++) {
+            double v;
+            switch (kinds[i]) {
+                case CONSTANT: v = constants[i]; break;
+                case VARIABLE: v = variables[lefts[i]]; break;
+                case ADD:      v = r[lefts[i]] + r[rights[i]]; break;
+                case MULTIPLY: v = r[lefts[i]] * r[rights[i]]; break;
+                case DIVIDE:   v = r[lefts[i]] / r[rights[i]]; break;
+                default:       v = Math.pow(r[lefts[i]], r[rights[i]]); break;
+            }
+            if (functions[i] != 0)
+                v = CompiledEquation.function(functions[i], v);
+            r[i] = v;
+        }
+        return r[size - 1];
+    }
+
+    /**
+     * @return number of distinct nodes after hash-consing
+     */
+    public int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * @return number of nodes in the tree before hash-consing, where every shared subtree is counted
+     *         once for each place it appears. Saturates at Long.MAX_VALUE
+     */
+    public long getTreeNodeCount() {
+        return treeNodeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionDag[nodes=" + size + ", tree nodes=" + treeNodeCount + "]";
+    }
+
+
+    //_________private methods_________//
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Key identifying a node by its contents and the ids of its interned operands
+     */
+    private static final class Key {
+        final byte kind, function;
+        final long constant;
+        final int left, right;
+
+        Key(byte kind, byte function, long constant, int left, int right) {
+            this.kind = kind;
+            this.function = function;
+            this.constant = constant;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return kind == k.kind && function == k.function && constant == k.constant
+                    && left == k.left && right == k.right;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = kind * 31 + function;
+            h = h * 31 + Long.hashCode(constant);
+            h = h * 31 + left;
+            return h * 31 + right;
+        }
+    }
+
+    private static final class Builder {
+        //nodes already interned by identity, so shared subtrees are only visited once
+        final Map<Node, Integer> visited = new IdentityHashMap<>();
+        final Map<Key, Integer> interned = new HashMap<>();
+
+        byte[] kinds = new byte[16];
+        byte[] functions = new byte[16];
+        double[] constants = new double[16];
+        int[] lefts = new int[16], rights = new int[16];
+        int size;
+
+        int intern(Node node) {
+            Integer id = visited.get(node);
+            if (id != null)
+                return id;
+
+            byte kind;
+            int left = -1, right = -1;
+            double constant = 0.0d;
+            switch (node.operator) {
+                case CONSTANT: kind = CONSTANT; constant = node.constant; break;
+                case VARIABLE: kind = VARIABLE; left = node.slot; break;
+                case ADD:      kind = ADD; break;
+                case MULTIPLY: kind = MULTIPLY; break;
+                case DIVIDE:   kind = DIVIDE; break;
+                case POWER:    kind = POWER; break;
+                default:
+                    throw new InvalidEquationException("Invalid operator <" + node.operator + ">");
+            }
+            if (kind >= ADD) {
+                left = intern(node.left);
+                right = intern(node.right);
+            }
+            byte function = node.type == EdgeType.DEFAULT ? 0
+                    : (byte) (CompiledEquation.FUNCTION + node.type.ordinal());
+
+            Key key = new Key(kind, function, Double.doubleToLongBits(constant), left, right);
+            id = interned.get(key);
+            if (id == null) {
+                id = add(kind, function, constant, left, right);
+                interned.put(key, id);
+            }
+            visited.put(node, id);
+            return id;
+        }
+
+        private int add(byte kind, byte function, double constant, int left, int right) {
+            if (size == kinds.length) {
+                int length = size * 2;
+                kinds = Arrays.copyOf(kinds, length);
+                functions = Arrays.copyOf(functions, length);
+                constants = Arrays.copyOf(constants, length);
+                lefts = Arrays.copyOf(lefts, length);
+                rights = Arrays.copyOf(rights, length);
+            }
+            kinds[size] = kind;
+            functions[size] = function;
+            constants[size] = constant;
+            lefts[size] = left;
+            rights[size] = right;
+            return size++;
+        }
+    }
+
+}
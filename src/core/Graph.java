@@ -1,11 +1,13 @@
 package core;
 
-import java.awt.Canvas;
-import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.image.BufferStrategy;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
+import java.awt.Point;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 
 
 import java.io.File;
@@ -13,6 +15,7 @@ import java.io.IOException;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
+import javax.swing.JPanel;
 
 /**
  *
@@ -21,32 +24,32 @@ import javax.swing.JFrame;
  *     A windowed graph which has the capabilities to render a line
  *     Uses awt library
  * </p>
+ * <p>
+ *     Dragging with the mouse pans the graph and the mouse wheel zooms around the pointer. The plane is
+ *     divided into tiles, and each equation is sampled adaptively per tile: more samples are taken where
+ *     the curve bends, and the curve is broken at poles and jumps instead of being joined by a vertical
+ *     line. Sampled tiles are cached, so panning only samples the newly exposed tiles, in parallel.
+ *     Memory is bounded whatever the range: the image has the size of the window and the cache holds
+ *     a fixed number of samples. The window is repainted once a frame is done, and otherwise only
+ *     when Swing asks for it.
+ * </p>
  *
  * @author Nick
  *
  */
-public class Graph extends JFrame implements Runnable{
+public class Graph extends JFrame {
 
     /**Fields:
      *
      */
     private static final long serialVersionUID = -1398735295691281522L;
-    private BufferedImage plane;
-    private int[] pixels;
-    private Thread thread;
-    private boolean running = false;
-
+    //largest size of the window when it opens
+    private static final int MAX_WIDTH = 1600, MAX_HEIGHT = 1000;
 
-    private Canvas canvas;
-    //o = origin
-    private double xMin, xMax, yMin, yMax;
-    private int originX, originY, scale, width, height;
+    private JPanel panel;
+    private final TiledView view;
 
-    private Node currentEqu;
-    private int currentEquPixel = 0;
-    private boolean derivative = false;
 
-    
 
 
     /**
@@ -61,26 +64,11 @@ public class Graph extends JFrame implements Runnable{
 
 
     public Graph(double xMin, double xMax, double yMin, double yMax, int scale){
-        this.xMin = xMin;
-        this.xMax = xMax;
-        this.yMin = yMin;
-        this.yMax = yMax;
-        this.scale = scale;
-
-        originX = (int) ((((xMax - xMin) * scale) / 2) * (Math.abs(xMax / xMin)));
-        originY = (int) ((((yMax - yMin) * scale) / 2) * (Math.abs(yMax / yMin)));
-
-        plane = new BufferedImage( (int) (xMax - xMin) * scale,(int) (yMax - yMin) * scale, BufferedImage.TYPE_INT_RGB);
-        pixels = ((DataBufferInt) plane.getRaster().getDataBuffer()).getData();
-        for(int i = 0; i < pixels.length; i++){
-            pixels[i] = Color.WHITE.getRGB();
-        }
-
-        width = plane.getWidth();
-        height = plane.getHeight();
+        //the window shows the top left of a range too large for it, the rest is reached by panning
+        int width = (int) Math.min(MAX_WIDTH, (long) (xMax - xMin) * scale);
+        int height = (int) Math.min(MAX_HEIGHT, (long) (yMax - yMin) * scale);
+        view = new TiledView(xMin, yMax, scale, width, height);
         startUI();
-
-        start();
     }
 
 
@@ -91,12 +79,65 @@ public class Graph extends JFrame implements Runnable{
     private void startUI() {
 
         setName("Calculator");
-        setResizable(false);
-        setBounds(0,0, width, height);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        panel = new JPanel() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                synchronized (Graph.this) {
+                    g.drawImage(view.getImage(), 0, 0, null);
+                }
+            }
+        };
+        panel.setPreferredSize(new Dimension(view.getWidth(), view.getHeight()));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (last == null)
+                    return;
+                synchronized (Graph.this) {
+                    view.pan(last.x - e.getX(), last.y - e.getY());
+                    redraw();
+                }
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                synchronized (Graph.this) {
+                    view.zoom(-e.getWheelRotation(), e.getX(), e.getY());
+                    redraw();
+                }
+            }
+        };
+        panel.addMouseListener(mouse);
+        panel.addMouseMotionListener(mouse);
+        panel.addMouseWheelListener(mouse);
+        panel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (panel.getWidth() <= 0 || panel.getHeight() <= 0)
+                    return;
+                synchronized (Graph.this) {
+                    view.resize(panel.getWidth(), panel.getHeight());
+                    redraw();
+                }
+            }
+        });
+
+        add(panel);
+        pack();
         setVisible(true);
-        canvas = new Canvas();
-        add(canvas);
 
 //		addWindowListener(new WindowAdapter() {
 //
@@ -120,28 +161,24 @@ public class Graph extends JFrame implements Runnable{
     }
     /**Saves the image to the path
      *
-     * @param path Path at which the image is saved.
+     * @param path Path of the directory in which graph.png is saved.
+     * @throws IOException if the image could not be written
      */
 
-    private void saveImage(String path) {
-        try {
-            ImageIO.write(plane, "png", new File(path + "/graph.png"));
-
-        } catch (IOException e) {
-
-        }
-
+    public synchronized void saveImage(String path) throws IOException {
+        ImageIO.write(view.getImage(), "png", new File(path, "graph.png"));
     }
 
 
-    /**Sets the color of a pixel at point x,y to color.
+    /**Sets the color of a pixel at point x,y to color, until the graph is drawn again.
      *
      * @param x pixel x
      * @param y pixel y
      * @param color rgb color
      */
-    public void setPixel(int x, int y, int color){
-        int index = y * width + x;
+    public synchronized void setPixel(int x, int y, int color){
+        int[] pixels = view.getPixels();
+        int index = y * view.getWidth() + x;
         if(index >= pixels.length || index < 0)
             return;
 
@@ -149,12 +186,13 @@ public class Graph extends JFrame implements Runnable{
     }
 
 
-    /**Sets the color of a pixel at index to color.
+    /**Sets the color of a pixel at index to color, until the graph is drawn again.
      *
      * @param index pixels index in the array
      * @param color rgb color
      */
-    public void setPixel(int index, int color){
+    public synchronized void setPixel(int index, int color){
+        int[] pixels = view.getPixels();
         if(index >= pixels.length)
             return;
 
@@ -163,107 +201,63 @@ public class Graph extends JFrame implements Runnable{
 
 
 
-    /**Draws the x and y axes based off of originX and originY defined in constructor
+    /**Sets the largest number of evaluations used to sample a curve across the width of the window.
+     * Fewer evaluations bound the time of a frame but show less detail, the limit applies to parts of
+     * the graph sampled afterwards
      *
+     * @param maxEvaluations evaluation limit, 8 per pixel column by default
+     * @throws IllegalArgumentException if maxEvaluations is not positive
      */
-    public void drawAxes()
-    {
-        Color color = new Color(5, 57, 122);
-        int c = color.getRGB();
-        for(int x = 0; x < width; x++)
-            for(int y = 0; y < height; y++){
-                if(x == originX) setPixel(x, y, c);
-                if(y == originY) setPixel(x, y, c);
-            }
-
-    }
-
-    public void drawEquation(Node equ){
-        currentEqu = equ;
-        derivative = false;
-
-    }
-    public void drawDerivative(Equation equ){
-        currentEqu = equ;
-        derivative = true;
+    public synchronized void setMaxEvaluations(int maxEvaluations){
+        if(maxEvaluations <= 0)
+            throw new IllegalArgumentException("Invalid evaluation limit " + maxEvaluations);
+        view.setMaxEvaluations(maxEvaluations);
     }
 
 
-    public synchronized void start(){
-        if(running) return;
-        running = true;
-
-
-        thread = new Thread(this);
-
-        thread.start();
-    }
-
-    public synchronized void stop(){
-        if(!running) return;
-
-        try {
-            thread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    /**
+     * @return part of the plane shown by the window
+     */
+    public synchronized Viewport getViewport(){
+        return view.getViewport();
     }
 
-    public void run(){
-        double timePerTick = 1000000000 / 600;
-        double delta = 0;
-        long lastTime = System.nanoTime();
-        long now;
-
-        while(running){
-            now = System.nanoTime();
-            delta += (now - lastTime) / timePerTick;
-            lastTime = now;
 
-            if(delta >=1){
-                tick();
-                delta = 0;
-            }
-        }
+    /**Draws the x and y axes
+     *
+     */
+    public synchronized void drawAxes()
+    {
+        view.setAxes(true);
+        redraw();
     }
 
-
-    public void tick(){
-        BufferStrategy bs = canvas.getBufferStrategy();
-        if(bs == null){
-            canvas.createBufferStrategy(2);
-            return;
-        }
-        Graphics g = bs.getDrawGraphics();
-
-        renderEquation();
-
-        g.drawImage(plane, 0, 0, null);
-        g.dispose();
-        bs.show();
+    /**Draws the equation across the whole graph
+     *
+     * @param equ equation to be drawn
+     */
+    public synchronized void drawEquation(Node equ){
+        view.addCurve(equ.compiled(), false);
+        redraw();
     }
 
-    private void renderEquation(){
-        if(currentEqu != null && currentEquPixel < width){
-            double x = getXValue(currentEquPixel);
-            double y = currentEqu.calculate(x);
-            int yIndex = getYPixelIndex(y);
-            int yDervIndex = getYPixelIndex(currentEqu.slopeAt(x));
-            setPixel(currentEquPixel,yIndex, Color.BLACK.getRGB());
-            if(derivative)
-                setPixel(currentEquPixel, yDervIndex, Color.BLACK.getRGB());
-            currentEquPixel++;
-
-        }
-        if(currentEquPixel >= width) currentEqu = null;
+    /**Draws the equation and its derivative across the whole graph
+     *
+     * @param equ equation to be drawn
+     */
+    public synchronized void drawDerivative(Equation equ){
+        CompiledEquation compiled = equ.compiled();
+        view.addCurve(compiled, false);
+        view.addCurve(compiled, true);
+        redraw();
     }
 
-    private double getXValue(double xPixel){
-        double val = (xPixel + originX) / scale;
-        return val - (xMax - xMin);
-    }
 
-    private int getYPixelIndex(double y) {
-        return (int) (-1* (y * scale - originY));
+    /**Draws the frame from the cached and newly sampled tiles and repaints once
+     *
+     */
+    private synchronized void redraw(){
+        view.render();
+        panel.repaint();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * IntegrateEvent Class
+ * <p>
+ *     Flight Recorder event for one definite integral calculated by an {@link Integrator}.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+@Name("calculator.Integrate")
+@Label("Integrate")
+@Category("Calculator")
+@Description("A definite integral calculated with adaptive Gauss-Kronrod quadrature")
+final class IntegrateEvent extends jdk.jfr.Event {
+
+    @Label("Start")
+    double start;
+
+    @Label("End")
+    double end;
+
+    @Label("Instructions")
+    @Description("Length of the compiled program of the equation")
+    int instructions;
+
+    @Label("Pieces")
+    int pieces;
+
+    @Label("Evaluations")
+    long evaluations;
+
+    @Label("Converged")
+    boolean converged;
+
+}
@@ -0,0 +1,62 @@
+package core;
+
+/**
+ * IntegrationResult Class
+ * <p>
+ *     Result of a definite integral calculated by an {@link Integrator}: the value,
+ *     an estimate of its absolute error and the number of times the equation was calculated.
+ * </p>
+ *
+ * @see core.Integrator
+ */
+public final class IntegrationResult {
+
+    //_________Fields_________//
+    private final double value;
+    private final double errorEstimate;
+    private final int evaluations;
+    private final boolean converged;
+
+    IntegrationResult(double value, double errorEstimate, int evaluations, boolean converged) {
+        this.value = value;
+        this.errorEstimate = errorEstimate;
+        this.evaluations = evaluations;
+        this.converged = converged;
+    }
+
+    /**
+     * @return approximate value of the integral
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return estimated absolute error of the value
+     */
+    public double getErrorEstimate() {
+        return errorEstimate;
+    }
+
+    /**
+     * @return number of values of the equation that were calculated
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return true if the error estimate is within the requested tolerance, false if the
+     *         evaluation budget ran out or the interval could not be divided any further
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return Util.format(value) + " +- " + String.format("%.1e", errorEstimate)
+                + " (" + evaluations + " evaluations" + (converged ? ")" : ", not converged)");
+    }
+
+}
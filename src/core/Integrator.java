@@ -0,0 +1,403 @@
+package core;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Integrator Class
+ * <p>
+ *     Calculates definite integrals with adaptive Gauss-Kronrod quadrature. Each interval is
+ *     sampled at the 15 Kronrod points, and the difference from the embedded 7 point Gauss rule
+ *     estimates its error. The interval with the largest error is repeatedly divided in half
+ *     until the total error is within tolerance, so smooth equations take a few dozen
+ *     calculations and sharp ones get more points only where they need them.
+ * </p>
+ * <p>
+ *     Calculation stops when the estimated error is at most
+ *     {@code max(absoluteTolerance, relativeTolerance * |value|)}, or when dividing again would
+ *     calculate the equation more than {@code maxEvaluations} times. An Integrator does not change
+ *     after construction and can be shared between threads.
+ * </p>
+ * <p>
+ *     For expensive equations over wide intervals, [a, b] can be split into {@code pieces} equal
+ *     subintervals that are integrated on a {@link ForkJoinPool} of {@code parallelism} threads,
+ *     shared with every other Integrator of the same parallelism.
+ *     Each piece gets an equal share of the absolute tolerance and of the evaluation budget, and
+ *     pieces are added in a fixed pairwise order, so the result is identical, bit for bit,
+ *     for every number of threads. It only depends on the number of pieces.
+ * </p>
+ *
+ * @see core.IntegrationResult
+ * @see core.Node#integrate(double, double)
+ */
+public final class Integrator {
+
+    private static final Integrator DEFAULT = new Integrator(1e-10, 1e-10, 150_000);
+
+    //_________Kronrod 15 point rule_________//
+    //points in [-1, 1], 0 last, odd indexes are also the Gauss 7 point
+    private static final double[] XGK = {
+            0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+            0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+            0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+            0.207784955007898467600689403773245, 0.0
+    };
+    private static final double[] WGK = {
+            0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+            0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+            0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+            0.204432940075298892414161999234649, 0.209482141084727828012999174891714
+    };
+    //Gauss 7 point weights for XGK[1], XGK[3], XGK[5] and 0
+    private static final double[] WG = {
+            0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+            0.381830050505118944950369775488975, 0.417959183673469387755102040816327
+    };
+    static final int POINTS = 15;
+
+    private static final double EPSILON = Math.ulp(1.0d);
+
+    //_________Fields_________//
+    private final double absoluteTolerance;
+    private final double relativeTolerance;
+    private final int maxEvaluations;
+    private final int pieces;
+    private final int parallelism;
+    //null when pieces are integrated on the calling thread
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an integrator that runs on the calling thread
+     *
+     * @param absoluteTolerance largest acceptable absolute error
+     * @param relativeTolerance largest acceptable error relative to the value of the integral
+     * @param maxEvaluations largest number of times the equation is calculated for one integral, at least 15
+     * @throws IllegalArgumentException if a tolerance is negative or NaN, or maxEvaluations is below 15
+     */
+    public Integrator(double absoluteTolerance, double relativeTolerance, int maxEvaluations) {
+        this(absoluteTolerance, relativeTolerance, maxEvaluations, 1, 1);
+    }
+
+    /**
+     * Creates an integrator that splits each integral into equal pieces integrated in parallel
+     *
+     * @param absoluteTolerance largest acceptable absolute error
+     * @param relativeTolerance largest acceptable error relative to the value of each piece
+     * @param maxEvaluations largest number of times the equation is calculated for one integral,
+     *                       at least 15 for each piece
+     * @param parallelism number of threads, 1 integrates every piece on the calling thread
+     * @param pieces number of equal subintervals [a, b] is split into, the granularity of the parallel work
+     * @throws IllegalArgumentException if a tolerance is negative or NaN, parallelism or pieces is not positive,
+     *         or maxEvaluations is below 15 for each piece
+     */
+    public Integrator(double absoluteTolerance, double relativeTolerance, int maxEvaluations,
+                      int parallelism, int pieces) {
+        if (!(absoluteTolerance >= 0.0d) || !(relativeTolerance >= 0.0d))
+            throw new IllegalArgumentException("Tolerances must not be negative");
+        if (parallelism <= 0 || pieces <= 0)
+            throw new IllegalArgumentException("Parallelism and pieces must be positive");
+        if (maxEvaluations / pieces < POINTS)
+            throw new IllegalArgumentException("At least " + POINTS + " evaluations are needed for each piece: "
+                    + maxEvaluations);
+        this.absoluteTolerance = absoluteTolerance;
+        this.relativeTolerance = relativeTolerance;
+        this.maxEvaluations = maxEvaluations;
+        this.parallelism = parallelism;
+        this.pieces = pieces;
+        pool = parallelism == 1 || pieces == 1 ? null : SharedPools.get(parallelism);
+    }
+
+    /**
+     * @return integrator used by {@link Node#definiteIntegral(double, double)}, with absolute and relative
+     *         tolerances of 1e-10 and at most 150000 evaluations
+     */
+    public static Integrator getDefault() {
+        return DEFAULT;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Calculates the definite integral of the equation from a to b
+     *
+     * @param equation compiled equation to be integrated
+     * @param a starting bound
+     * @param b ending bound, if it is below a the result is negated
+     * @return value, error estimate and number of evaluations
+     */
+    public IntegrationResult integrate(CompiledEquation equation, double a, double b) {
+        IntegrateEvent event = new IntegrateEvent();
+        event.begin();
+        long start = System.nanoTime();
+        IntegrationResult result = calculate(equation, a, b);
+        CalculatorMetrics.getDefault().integrated(result.getEvaluations(), result.isConverged(), System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.start = a;
+            event.end = b;
+            event.instructions = equation.code().length;
+            event.pieces = pieces;
+            event.evaluations = result.getEvaluations();
+            event.converged = result.isConverged();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * @return largest acceptable absolute error
+     */
+    public double getAbsoluteTolerance() {
+        return absoluteTolerance;
+    }
+
+    /**
+     * @return largest acceptable error relative to the value of the integral
+     */
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    /**
+     * @return largest number of times the equation is calculated for one integral
+     */
+    public int getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+    /**
+     * @return number of threads integrating pieces
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of equal subintervals each integral is split into
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Integrates [a, b] on the pool, or on the calling thread if there is one piece
+     */
+    private IntegrationResult calculate(CompiledEquation equation, double a, double b) {
+        if (a == b)
+            return new IntegrationResult(0.0d, 0.0d, 0, true);
+        if (a > b) {
+            IntegrationResult r = calculate(equation, b, a);
+            return new IntegrationResult(-r.getValue(), r.getErrorEstimate(), r.getEvaluations(), r.isConverged());
+        }
+
+        if (pieces == 1)
+            return adaptive(equation, a, b, absoluteTolerance, maxEvaluations);
+
+        Pieces task = new Pieces(equation, a, b, 0, pieces);
+        return pool == null ? task.compute() : pool.invoke(task);
+    }
+
+    /**
+     * Integrates [a, b], a below b, by repeatedly dividing the interval with the largest error
+     * until the error is within tolerance or budget evaluations would be passed.
+     * Segments whose value is not finite are divided first, which removes a single point where the
+     * equation is not defined, such as x = 0 in sin(x)/x. If both halves are still not finite, the
+     * equation is not defined on a range and the integral is returned without converging
+     */
+    private IntegrationResult adaptive(CompiledEquation equation, double a, double b,
+                                       double tolerance, int budget) {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+
+        Segment first = rule(equation, a, b, xs, ys);
+        int evaluations = POINTS;
+        //running totals of the finite segments, and number of segments that are not finite
+        double value = 0.0d, error = 0.0d;
+        int undefined = 0;
+        if (first.isFinite()) {
+            value = first.value;
+            error = first.error;
+        } else {
+            undefined++;
+        }
+
+        //largest error first
+        PriorityQueue<Segment> segments = new PriorityQueue<>(
+                (i, j) -> Double.compare(j.priority(), i.priority()));
+        segments.add(first);
+
+        boolean converged = false;
+        while (true) {
+            if (undefined == 0 && error <= Math.max(tolerance, relativeTolerance * Math.abs(value))) {
+                converged = true;
+                break;
+            }
+            if (evaluations + 2 * POINTS > budget)
+                break;
+
+            Segment worst = segments.peek();
+            double middle = 0.5d * (worst.a + worst.b);
+            //the interval is too small to be divided
+            if (!(middle > worst.a && middle < worst.b))
+                break;
+
+            segments.poll();
+            Segment left = rule(equation, worst.a, middle, xs, ys);
+            Segment right = rule(equation, middle, worst.b, xs, ys);
+            evaluations += 2 * POINTS;
+            segments.add(left);
+            segments.add(right);
+
+            if (worst.isFinite()) {
+                value -= worst.value;
+                error -= worst.error;
+            } else if (!left.isFinite() && !right.isFinite()) {
+                break;
+            } else {
+                undefined--;
+            }
+            for (Segment half : new Segment[]{left, right}) {
+                if (half.isFinite()) {
+                    value += half.value;
+                    error += half.error;
+                } else {
+                    undefined++;
+                }
+            }
+        }
+
+        //running totals drift as segments are replaced, add the final segments again in order of position
+        Segment[] sorted = segments.toArray(new Segment[0]);
+        Arrays.sort(sorted, (i, j) -> Double.compare(i.a, j.a));
+        double sum = 0.0d, compensation = 0.0d, totalError = 0.0d;
+        for (Segment i : sorted) {
+            double t = sum + i.value;
+            compensation += Math.abs(sum) >= Math.abs(i.value) ? (sum - t) + i.value : (i.value - t) + sum;
+            sum = t;
+            totalError += i.error;
+        }
+        return new IntegrationResult(sum + compensation, totalError, evaluations, converged);
+    }
+
+    /**
+     * Integrates pieces [from, to) of [a, b], splitting the range in half until one piece is left.
+     * The split does not depend on which threads run the halves, so neither does the result
+     */
+    @SuppressWarnings("serial")
+    private final class Pieces extends RecursiveTask<IntegrationResult> {
+        private final CompiledEquation equation;
+        private final double a, b;
+        private final int from, to;
+
+        Pieces(CompiledEquation equation, double a, double b, int from, int to) {
+            this.equation = equation;
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntegrationResult compute() {
+            if (to - from == 1) {
+                double start = from == 0 ? a : a + (b - a) * from / pieces;
+                double end = to == pieces ? b : a + (b - a) * to / pieces;
+                return adaptive(equation, start, end, absoluteTolerance / pieces, maxEvaluations / pieces);
+            }
+
+            int middle = (from + to) >>> 1;
+            Pieces left = new Pieces(equation, a, b, from, middle);
+            Pieces right = new Pieces(equation, a, b, middle, to);
+            IntegrationResult l, r;
+            if (pool == null) {
+                l = left.compute();
+                r = right.compute();
+            } else {
+                left.fork();
+                r = right.compute();
+                l = left.join();
+            }
+            return new IntegrationResult(l.getValue() + r.getValue(), l.getErrorEstimate() + r.getErrorEstimate(),
+                    l.getEvaluations() + r.getEvaluations(), l.isConverged() && r.isConverged());
+        }
+    }
+
+    /**
+     * Applies the Gauss-Kronrod rule to [a, b]
+     *
+     * @param xs scratch array of 15 points
+     * @param ys scratch array of 15 values
+     * @return segment holding the Kronrod value and its error estimate
+     */
+    static Segment rule(CompiledEquation equation, double a, double b, double[] xs, double[] ys) {
+        double center = 0.5d * (a + b);
+        double half = 0.5d * (b - a);
+
+        //xs[2i] and xs[2i + 1] are mirrored, the center is last
+        for (int i = 0; i < 7; i++) {
+            xs[2 * i] = center - half * XGK[i];
+            xs[2 * i + 1] = center + half * XGK[i];
+        }
+        xs[14] = center;
+        equation.calculate(xs, 0, ys, 0, POINTS);
+
+        double fc = ys[14];
+        double kronrod = WGK[7] * fc;
+        double gauss = WG[3] * fc;
+        double absolute = Math.abs(kronrod);
+        for (int i = 0; i < 7; i++) {
+            double sum = ys[2 * i] + ys[2 * i + 1];
+            kronrod += WGK[i] * sum;
+            absolute += WGK[i] * (Math.abs(ys[2 * i]) + Math.abs(ys[2 * i + 1]));
+            if ((i & 1) == 1)
+                gauss += WG[i >> 1] * sum;
+        }
+
+        //integral of |f - mean|, used to scale the error estimate as in QUADPACK
+        double mean = 0.5d * kronrod;
+        double spread = WGK[7] * Math.abs(fc - mean);
+        for (int i = 0; i < 7; i++)
+            spread += WGK[i] * (Math.abs(ys[2 * i] - mean) + Math.abs(ys[2 * i + 1] - mean));
+
+        double error = Math.abs((kronrod - gauss) * half);
+        spread *= Math.abs(half);
+        absolute *= Math.abs(half);
+        if (spread != 0.0d && error != 0.0d)
+            error = spread * Math.min(1.0d, Math.pow(200.0d * error / spread, 1.5d));
+        if (absolute > Double.MIN_NORMAL / (50.0d * EPSILON))
+            error = Math.max(50.0d * EPSILON * absolute, error);
+
+        return new Segment(a, b, kronrod * half, error);
+    }
+
+    /**
+     * Part of [a, b] with its calculated value and error estimate
+     */
+    static final class Segment {
+        final double a, b;
+        final double value;
+        final double error;
+
+        Segment(double a, double b, double value, double error) {
+            this.a = a;
+            this.b = b;
+            this.value = value;
+            this.error = error;
+        }
+
+        //segments whose values are not finite are divided first
+        double priority() {
+            return isFinite() ? error : Double.POSITIVE_INFINITY;
+        }
+
+        boolean isFinite() {
+            return Double.isFinite(value) && Double.isFinite(error);
+        }
+    }
+
+}
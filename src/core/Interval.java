@@ -0,0 +1,62 @@
+package core;
+
+/**
+ * Interval Class
+ * <p>
+ *     A closed range of values [lower, upper] holding every value an equation takes over a range
+ *     of x, as calculated by {@link Node#calculateBounds(double, double)}. Either bound may be
+ *     infinite. An empty interval means the equation is not defined anywhere in the range.
+ * </p>
+ *
+ * @see core.Node#calculateBounds(double, double)
+ */
+public final class Interval {
+
+    /**
+     * Interval holding no values, both bounds are NaN
+     */
+    public static final Interval EMPTY = new Interval(Double.NaN, Double.NaN);
+
+    //_________Fields_________//
+    private final double lower, upper;
+
+    Interval(double lower, double upper) {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * @return smallest value of the interval, NaN if it is empty
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * @return largest value of the interval, NaN if it is empty
+     */
+    public double getUpper() {
+        return upper;
+    }
+
+    /**
+     * @return true if the interval holds no values
+     */
+    public boolean isEmpty() {
+        return Double.isNaN(lower);
+    }
+
+    /**
+     * @param value value to be checked
+     * @return true if lower &lt;= value &lt;= upper
+     */
+    public boolean contains(double value) {
+        return lower <= value && value <= upper;
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "[]" : "[" + lower + ", " + upper + "]";
+    }
+
+}
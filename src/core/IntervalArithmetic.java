@@ -0,0 +1,378 @@
+package core;
+
+/**
+ * Interval arithmetic with outward rounding, used to bound the values of an equation over a range of x
+ * <p>
+ *     The compiled program of an equation is run once with every value replaced by an interval holding
+ *     it. Each operation returns an interval holding every result of the operation on values of its
+ *     operands, so the final interval holds every value of the equation over the range. Results of
+ *     arithmetic are widened by one ulp, and results of {@code Math} functions, which are accurate to
+ *     one ulp, by two, so rounding never makes a bound too tight.
+ * </p>
+ * <p>
+ *     Sine and cosine reach -1 and 1 where the range holds one of their extremes, tangent is unbounded
+ *     over a pole, and division by an interval holding 0 gives a half or the whole line. Values outside
+ *     the domain of ln, log, arcsine, arccosine and of powers of negative numbers are left out, and an
+ *     empty interval is returned if the equation is defined nowhere in the range. Bounds are tight for
+ *     monotonic functions of x and grow with the number of times x appears, so they are best over small
+ *     ranges. Constants are taken as exact.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Interval
+ * @see core.Node#calculateBounds(double, double)
+ */
+final class IntervalArithmetic {
+
+    private static final EdgeType[] TYPES = EdgeType.values();
+    private static final double TWO_PI = 2.0d * Math.PI;
+
+    //scratch stack of lower and upper bound pairs for each thread
+    private static final ThreadLocal<double[]> STACK = ThreadLocal.withInitial(() -> new double[32]);
+
+    private IntervalArithmetic() {
+    }
+
+    /**
+     * Bounds the values of a compiled equation for x between lower and upper
+     *
+     * @param program compiled equation
+     * @param lower smallest x
+     * @param upper largest x, not less than lower
+     * @return interval holding every value of the equation over the range
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    static Interval calculate(CompiledEquation program, double lower, double upper) {
+        program.requireSingleVariable();
+        double[] s = STACK.get();
+        int frame = (program.getMaxStack() + program.getRegisterCount()) * 2;
+        if (s.length < frame) {
+            s = new double[frame];
+            STACK.set(s);
+        }
+
+        byte[] code = program.code();
+        double[] constants = program.constants();
+        int[] registers = program.registers();
+        //registers of shared subtrees follow the stack
+        int base = program.getMaxStack() * 2;
+        //index of the lower bound on top of the stack, its upper bound is at top + 1
+        int top = -2;
+        int c = 0, g = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CompiledEquation.CONSTANT:
+                    top += 2;
+                    s[top] = constants[c];
+                    s[top + 1] = constants[c++];
+                    break;
+                case CompiledEquation.VARIABLE:
+                    top += 2;
+                    s[top] = lower;
+                    s[top + 1] = upper;
+                    break;
+                case CompiledEquation.LOAD: {
+                    top += 2;
+                    int r = base + registers[g++] * 2;
+                    s[top] = s[r];
+                    s[top + 1] = s[r + 1];
+                    break;
+                }
+                case CompiledEquation.STORE: {
+                    int r = base + registers[g++] * 2;
+                    s[r] = s[top];
+                    s[r + 1] = s[top + 1];
+                    break;
+                }
+                case CompiledEquation.ADD:
+                    top -= 2;
+                    if (empty(s, top) || empty(s, top + 2))
+                        store(s, top, Double.NaN, Double.NaN);
+                    else
+                        store(s, top, down(s[top] + s[top + 2]), up(s[top + 1] + s[top + 3]));
+                    break;
+                case CompiledEquation.MULTIPLY:
+                    top -= 2;
+                    multiply(s, top, s[top + 2], s[top + 3]);
+                    break;
+                case CompiledEquation.DIVIDE:
+                    top -= 2;
+                    reciprocal(s, top + 2);
+                    multiply(s, top, s[top + 2], s[top + 3]);
+                    break;
+                case CompiledEquation.POWER:
+                    top -= 2;
+                    power(s, top);
+                    break;
+                default:
+                    function(code[pc], s, top);
+            }
+        }
+        return empty(s, 0) ? Interval.EMPTY : new Interval(s[0], s[1]);
+    }
+
+
+    //_________private methods_________//
+
+    private static boolean empty(double[] s, int i) {
+        return Double.isNaN(s[i]);
+    }
+
+    /**
+     * Stores the interval at s[i], a bound that is NaN because of an infinite operand is made infinite.
+     * An empty interval must be stored with both bounds NaN
+     */
+    private static void store(double[] s, int i, double lower, double upper) {
+        if (Double.isNaN(lower) && Double.isNaN(upper)) {
+            s[i] = Double.NaN;
+            s[i + 1] = Double.NaN;
+            return;
+        }
+        s[i] = Double.isNaN(lower) ? Double.NEGATIVE_INFINITY : lower;
+        s[i + 1] = Double.isNaN(upper) ? Double.POSITIVE_INFINITY : upper;
+    }
+
+    //bounds of a correctly rounded operation
+    private static double down(double v) {
+        return Math.nextDown(v);
+    }
+
+    private static double up(double v) {
+        return Math.nextUp(v);
+    }
+
+    //bounds of a Math function accurate to one ulp
+    private static double low(double v) {
+        return Math.nextDown(Math.nextDown(v));
+    }
+
+    private static double high(double v) {
+        return Math.nextUp(Math.nextUp(v));
+    }
+
+    /**
+     * Multiplies the interval at s[i] by [lower, upper]. The product of 0 and an infinite bound is 0
+     */
+    private static void multiply(double[] s, int i, double lower, double upper) {
+        double a = s[i], b = s[i + 1];
+        if (Double.isNaN(a) || Double.isNaN(lower)) {
+            store(s, i, Double.NaN, Double.NaN);
+            return;
+        }
+        double p1 = product(a, lower), p2 = product(a, upper), p3 = product(b, lower), p4 = product(b, upper);
+        store(s, i, down(Math.min(Math.min(p1, p2), Math.min(p3, p4))), up(Math.max(Math.max(p1, p2), Math.max(p3, p4))));
+    }
+
+    private static double product(double a, double b) {
+        return a == 0.0d || b == 0.0d ? 0.0d : a * b;
+    }
+
+    /**
+     * Replaces the interval at s[i] by the interval of 1 / v for every non zero v in it
+     */
+    private static void reciprocal(double[] s, int i) {
+        double a = s[i], b = s[i + 1];
+        if (Double.isNaN(a))
+            return;
+        if (a == 0.0d && b == 0.0d)
+            store(s, i, Double.NaN, Double.NaN);
+        else if (a > 0.0d || b < 0.0d)
+            store(s, i, down(1.0d / b), up(1.0d / a));
+        else if (a == 0.0d)
+            store(s, i, down(1.0d / b), Double.POSITIVE_INFINITY);
+        else if (b == 0.0d)
+            store(s, i, Double.NEGATIVE_INFINITY, up(1.0d / a));
+        else
+            store(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Replaces the interval at s[i] by the interval at s[i] raised to the interval at s[i + 2]
+     */
+    private static void power(double[] s, int i) {
+        double a = s[i], b = s[i + 1], c = s[i + 2], d = s[i + 3];
+        //x^0 is 1 for every x, NaN included, as in Math.pow
+        if (c == 0.0d && d == 0.0d) {
+            store(s, i, 1.0d, 1.0d);
+            return;
+        }
+        if (Double.isNaN(a) || Double.isNaN(c)) {
+            store(s, i, Double.NaN, Double.NaN);
+            return;
+        }
+
+        //integer exponents are defined for negative bases
+        if (c == d && c == Math.rint(c) && Math.abs(c) < 0x1p53) {
+            double n = Math.abs(c);
+            if (n % 2.0d == 1.0d)
+                store(s, i, low(Math.pow(a, n)), high(Math.pow(b, n)));
+            else if (a >= 0.0d)
+                store(s, i, Math.max(0.0d, low(Math.pow(a, n))), high(Math.pow(b, n)));
+            else if (b <= 0.0d)
+                store(s, i, Math.max(0.0d, low(Math.pow(b, n))), high(Math.pow(a, n)));
+            else
+                store(s, i, 0.0d, high(Math.pow(Math.max(-a, b), n)));
+            if (c < 0.0d)
+                reciprocal(s, i);
+            return;
+        }
+
+        if (a < 0.0d && Math.floor(d) >= Math.ceil(c)) {
+            //some negative bases are raised to an integer, |x^y| = |x|^y
+            double m = Math.max(-a, b);
+            double bound = Math.max(Math.max(Math.pow(0.0d, c), Math.pow(0.0d, d)), Math.max(Math.pow(m, c), Math.pow(m, d)));
+            bound = Double.isNaN(bound) ? Double.POSITIVE_INFINITY : high(bound);
+            store(s, i, -bound, bound);
+            return;
+        }
+        if (b < 0.0d) {
+            store(s, i, Double.NaN, Double.NaN);
+            return;
+        }
+
+        //for x >= 0, x^y is monotonic in x and in y, so the extremes are at the corners
+        a = Math.max(a, 0.0d);
+        double p1 = Math.pow(a, c), p2 = Math.pow(a, d), p3 = Math.pow(b, c), p4 = Math.pow(b, d);
+        if (Double.isNaN(p1) || Double.isNaN(p2) || Double.isNaN(p3) || Double.isNaN(p4))
+            store(s, i, 0.0d, Double.POSITIVE_INFINITY);
+        else
+            store(s, i, Math.max(0.0d, low(Math.min(Math.min(p1, p2), Math.min(p3, p4)))),
+                    high(Math.max(Math.max(p1, p2), Math.max(p3, p4))));
+    }
+
+    /**
+     * Applies the function with the given opcode to the interval at s[i]
+     */
+    private static void function(byte op, double[] s, int i) {
+        if (Double.isNaN(s[i]))
+            return;
+        double a = s[i], b = s[i + 1];
+        switch (TYPES[op - CompiledEquation.FUNCTION]) {
+            case SINE:
+                periodic(s, i, Math.PI / 2.0d, Math.sin(a), Math.sin(b));
+                break;
+            case COSINE:
+                periodic(s, i, 0.0d, Math.cos(a), Math.cos(b));
+                break;
+            case TANGENT:
+                tangent(s, i);
+                break;
+            case COSECANT:
+                periodic(s, i, Math.PI / 2.0d, Math.sin(a), Math.sin(b));
+                reciprocal(s, i);
+                break;
+            case SECANT:
+                periodic(s, i, 0.0d, Math.cos(a), Math.cos(b));
+                reciprocal(s, i);
+                break;
+            case COTANGENT:
+                tangent(s, i);
+                reciprocal(s, i);
+                break;
+            case ARCSINE:
+                arcsine(s, i);
+                break;
+            case ARCCOSINE:
+                arccosine(s, i);
+                break;
+            case ARCTANGENT:
+                store(s, i, low(Math.atan(a)), high(Math.atan(b)));
+                break;
+            case ARCCOSECANT:
+                reciprocal(s, i);
+                arcsine(s, i);
+                break;
+            case ARCSECANT:
+                reciprocal(s, i);
+                arccosine(s, i);
+                break;
+            case ARCCOTANGENT:
+                reciprocal(s, i);
+                if (!Double.isNaN(s[i]))
+                    store(s, i, low(Math.atan(s[i])), high(Math.atan(s[i + 1])));
+                break;
+            case NATURAL_LOG:
+                if (b < 0.0d)
+                    store(s, i, Double.NaN, Double.NaN);
+                else
+                    store(s, i, low(Math.log(Math.max(a, 0.0d))), high(Math.log(b)));
+                break;
+            case LOG_BASE_TEN:
+                if (b < 0.0d)
+                    store(s, i, Double.NaN, Double.NaN);
+                else
+                    store(s, i, low(Math.log10(Math.max(a, 0.0d))), high(Math.log10(b)));
+                break;
+            case ABSOLUTE_VALUE:
+                if (b <= 0.0d)
+                    store(s, i, -b, -a);
+                else if (a < 0.0d)
+                    store(s, i, 0.0d, Math.max(-a, b));
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Bounds sine or cosine over the interval at s[i]
+     *
+     * @param peak x of a maximum, the minima are half a period away
+     * @param fa value at the lower bound
+     * @param fb value at the upper bound
+     */
+    private static void periodic(double[] s, int i, double peak, double fa, double fb) {
+        double a = s[i], b = s[i + 1];
+        if (!(b - a < TWO_PI)) {
+            store(s, i, -1.0d, 1.0d);
+            return;
+        }
+        double lower = holds(a, b, peak + Math.PI, TWO_PI) ? -1.0d : Math.max(-1.0d, low(Math.min(fa, fb)));
+        double upper = holds(a, b, peak, TWO_PI) ? 1.0d : Math.min(1.0d, high(Math.max(fa, fb)));
+        store(s, i, lower, upper);
+    }
+
+    private static void tangent(double[] s, int i) {
+        double a = s[i], b = s[i + 1];
+        if (!(b - a < Math.PI) || holds(a, b, Math.PI / 2.0d, Math.PI))
+            store(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        else
+            store(s, i, low(Math.tan(a)), high(Math.tan(b)));
+    }
+
+    private static void arcsine(double[] s, int i) {
+        double a = s[i], b = s[i + 1];
+        if (Double.isNaN(a) || b < -1.0d || a > 1.0d)
+            store(s, i, Double.NaN, Double.NaN);
+        else
+            store(s, i, low(Math.asin(Math.max(a, -1.0d))), high(Math.asin(Math.min(b, 1.0d))));
+    }
+
+    private static void arccosine(double[] s, int i) {
+        double a = s[i], b = s[i + 1];
+        if (Double.isNaN(a) || b < -1.0d || a > 1.0d)
+            store(s, i, Double.NaN, Double.NaN);
+        else
+            store(s, i, low(Math.acos(Math.min(b, 1.0d))), high(Math.acos(Math.max(a, -1.0d))));
+    }
+
+    /**
+     * Checks whether [a, b] may hold a point of point + k * period for an integer k. Errors in the
+     * period and in rounding are covered by a margin, so the answer can be a false yes but never a false no
+     */
+    private static boolean holds(double a, double b, double point, double period) {
+        double margin = 1e-12 * Math.max(1.0d, Math.max(Math.abs(a), Math.abs(b)));
+        double k = Math.ceil((a - point) / period);
+        //too far from 0 to tell the periods apart
+        if (!(Math.abs(k) < 0x1p50))
+            return true;
+        for (double j = k - 1.0d; j <= k + 1.0d; j++) {
+            double p = point + j * period;
+            if (p >= a - margin && p <= b + margin)
+                return true;
+        }
+        return false;
+    }
+
+}
@@ -1,123 +1,251 @@
 package core;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongConsumer;
+
 /**
  * Node Class
  * <p>
  *     Used to represent a binary syntax tree, where {@code left} and {@code right} are the next in the tree.
- * Holds 4 fields. Two other Node instances {@code left} and {@code right}, a String {@code value},
- * and a EdgeType {@code type}.
+ * Holds 5 fields. Two other Node instances {@code left} and {@code right}, an Operator {@code operator},
+ * a double {@code constant} and a EdgeType {@code type}.
+ * </p>
+ * <p>
+ *     A Node is either a binary operator with both {@code left} and {@code right} set,
+ *     a constant leaf whose value is held in {@code constant}, or a variable leaf. A variable holds
+ *     its name and its {@code slot}, the index of its value in the array passed to
+ *     {@link #calculate(double[])}. Single variable equations only use slot 0, x unless another
+ *     name was declared.
+ * </p>
+ * <p>
+ *     Nodes are immutable: every field is final and set by a constructor, so a Node is safely
+ *     published to other threads without synchronization and one parsed equation can be shared
+ *     by any number of threads. The symbolic methods ({@link #calculateDerivative()},
+ *     {@link #simplify()}, {@link #taylorExpansion(int, double)}) build new nodes and leave this one
+ *     unchanged, sharing its subtrees. The compiled form used by the batch methods is created lazily
+ *     and is itself immutable, at worst two threads compile the same node once each.
  * </p>
  */
 public class Node {
 
     //_________Fields_________//
-    Node left, right;
-    String value;
-    EdgeType type;
+    final Node left, right;
+    final Operator operator;
+    final double constant;
+    final EdgeType type;
+    //index and name of a variable leaf
+    final int slot;
+    final String name;
+
+    //compiled form of the node, created the first time a batch of values is calculated
+    private volatile CompiledEquation compiled;
 
     //_________Constructors_________//
 
-    Node(String value, EdgeType type) {
-        this.value = value;
+    private Node(Operator operator, EdgeType type, double constant, int slot, String name, Node left, Node right) {
+        this.operator = operator;
         this.type = type;
+        this.constant = constant;
+        this.slot = slot;
+        this.name = name;
+        this.left = left;
+        this.right = right;
+    }
+
+    Node(Operator operator, EdgeType type, Node left, Node right) {
+        this(operator, type, 0.0d, 0, null, left, right);
     }
 
-    Node(String value) {
-        this(value, EdgeType.DEFAULT);
+    Node(Operator operator, Node left, Node right) {
+        this(operator, EdgeType.DEFAULT, left, right);
     }
 
-    Node() {
-        this(null, EdgeType.DEFAULT);
+    Node(double constant, EdgeType type) {
+        this(Operator.CONSTANT, type, constant, 0, null, null, null);
     }
 
+    Node(double constant) {
+        this(constant, EdgeType.DEFAULT);
+    }
+
+    Node(int slot, String name) {
+        this(Operator.VARIABLE, EdgeType.DEFAULT, 0.0d, slot, name, null, null);
+    }
 
     /**
-     * Constructor to easily copy a Node
+     * Constructor to copy a Node with another function applied to it.
+     * The copy shares its subtrees with node
      *
      * @param node Node to be copied
+     * @param type function of the copy
      */
-    private Node(Node node) {
-        this.type = node.type;
-        this.value = node.value;
-        if (node.left != null) {
-            this.left = new Node(node.left);
-            this.right = new Node(node.right);
-        }
-
+    Node(Node node, EdgeType type) {
+        this(node.operator, type, node.constant, node.slot, node.name, node.left, node.right);
+    }
 
+    /**
+     * Constructor to copy a Node, sharing its subtrees
+     *
+     * @param node Node to be copied
+     */
+    Node(Node node) {
+        this(node, node.type);
     }
 
 
     //_________public methods_________//
 
     /**
-     * Calculates the value of the node, taking into account the EdgeType (sine, cosine, etc)
+     * Calculates the value of the node, taking into account the EdgeType (sine, cosine, etc).
+     * The node is compiled on the first call, so subtrees shared by several parents,
+     * as in derivatives, are calculated once
      *
      * @param x value of x to be calculated
      * @return value of node with branch type accounted for
+     * @throws IllegalStateException if the node has more than one variable
+     * @see CompiledEquation#calculate(double)
      */
     public double calculate(double x) {
-        if (type == EdgeType.DEFAULT)
-            return rawValue(x);
-
-        if (type == EdgeType.NATURAL_LOG)
-            return Math.log(rawValue(x));
-
-        if (type == EdgeType.LOG_BASE_TEN)
-            return Math.log10(rawValue(x));
-
-        if (type == EdgeType.SINE)
-            return Math.sin(rawValue(x));
-
-        if (type == EdgeType.COSINE)
-            return Math.cos(rawValue(x));
-
-        if (type == EdgeType.TANGENT)
-            return Math.tan(rawValue(x));
+        return compiled().calculate(x);
+    }
 
-        if (type == EdgeType.COSECANT)
-            return 1.0d / Math.sin(rawValue(x));
 
-        if (type == EdgeType.SECANT)
-            return 1.0d / Math.cos(rawValue(x));
+    /**
+     * Calculates the value of a node with several variables, the value of the variable in slot i
+     * is {@code variables[i]}, in the order the variables were declared
+     *
+     * @param variables values of the variables
+     * @return value of the node
+     * @throws IllegalArgumentException if variables is shorter than the number of slots used
+     * @see CompiledEquation#calculate(double[])
+     */
+    public double calculate(double[] variables) {
+        return compiled().calculate(variables);
+    }
 
-        if (type == EdgeType.COTANGENT)
-            return 1.0d / Math.tan(rawValue(x));
+    /**
+     * Names of the variables of the node, the name of the variable in slot i at index i.
+     * Slots that are not used by the node have a null name
+     *
+     * @return names of the variables
+     */
+    public String[] getVariables() {
+        String[] names = new String[compiled().getVariableCount()];
+        collectVariables(this, names, new IdentityHashMap<>());
+        return names;
+    }
 
-        if (type == EdgeType.ARCSINE)
-            return Math.asin(rawValue(x));
+    /**
+     * Calculates the values of the node for every x in xs
+     *
+     * @param xs values of x to be calculated
+     * @param out array the results are written to, at least as long as xs
+     * @see CompiledEquation#calculate(double[], int, double[], int, int)
+     */
+    public void calculate(double[] xs, double[] out) {
+        calculate(xs, 0, out, 0, xs.length);
+    }
 
-        if (type == EdgeType.ARCCOSINE)
-            return Math.acos(rawValue(x));
+    /**
+     * Calculates the values of the node for {@code length} values of x starting at {@code xs[offset]},
+     * writing the results starting at {@code out[outOffset]}.
+     * Values are calculated a block at a time instead of walking the tree for every x
+     *
+     * @param xs values of x to be calculated
+     * @param offset index of the first x value
+     * @param out array the results are written to
+     * @param outOffset index the first result is written to
+     * @param length number of values to be calculated
+     * @see CompiledEquation#calculate(double[], int, double[], int, int)
+     */
+    public void calculate(double[] xs, int offset, double[] out, int outOffset, int length) {
+        compiled().calculate(xs, offset, out, outOffset, length);
+    }
 
-        if (type == EdgeType.ARCTANGENT)
-            return Math.atan(rawValue(x));
+    /**
+     * Compiles the node into a flat postfix program that can be evaluated
+     * without walking the tree. Useful when calculating a large number of values
+     *
+     * @return CompiledEquation representing this node
+     * @throws InvalidEquationException if the tree contains a value that cannot be calculated
+     */
+    public CompiledEquation compile() throws InvalidEquationException {
+        return new CompiledEquation(this);
+    }
 
-        if (type == EdgeType.ARCCOSECANT)
-            return Math.asin(rawValue(1.0d / x));
 
-        if (type == EdgeType.ARCSECANT)
-            return Math.acos(rawValue(1.0d / x));
+    /**
+     * Generates a JVM class that calculates this node with straight line arithmetic.
+     * Generating the class is much slower than {@link #compile()}, but calculating values
+     * with the result is as fast as hand written code.
+     * Nodes too large for a single JVM method are compiled with {@link #compile()} instead
+     *
+     * @return operator calculating the value of the node at x
+     * @throws InvalidEquationException if the tree contains a value that cannot be calculated
+     * @throws IllegalStateException if the node has more than one variable
+     */
+    public DoubleUnaryOperator compileToBytecode() throws InvalidEquationException {
+        return BytecodeCompiler.compile(this);
+    }
 
-        if (type == EdgeType.ARCCOTANGENT)
-            return Math.atan(rawValue(1.0d / x));
 
-        if (type == EdgeType.ABSOLUTE_VALUE)
-            return Math.abs(rawValue(x));
+    /**
+     * Calculates the instantaneous rate of change, or the derivative at a point.
+     * The derivative is exact, it is calculated together with the value in a single pass
+     * with forward mode automatic differentiation
+     *
+     * @param x place at which the slope is calculated
+     * @return slope of the tangent line at x
+     * @see CompiledEquation#slopeAt(double)
+     */
+    public double slopeAt(double x) {
+        return compiled().slopeAt(x);
+    }
 
-        return 0.0d;
+    /**
+     * Calculates the value and the slope at x in a single pass
+     *
+     * @param x value of x to be calculated
+     * @param out array of at least 2, the value is written to out[0] and the slope to out[1]
+     * @see CompiledEquation#calculateDual(double, double[])
+     */
+    public void calculateDual(double x, double[] out) {
+        compiled().calculateDual(x, out);
     }
 
+    /**
+     * Calculates bounds holding every value of the equation for x between a and b, such as
+     * [-1, 1] for sin(x) over [0, 4]. Useful to skip parts of a range where the equation is
+     * provably out of view, flat or undefined
+     *
+     * @param a one end of the range of x
+     * @param b other end of the range of x
+     * @return interval of the values over the range, empty if the equation is not defined anywhere in it
+     * @see CompiledEquation#calculateBounds(double, double)
+     */
+    public Interval calculateBounds(double a, double b) {
+        return compiled().calculateBounds(a, b);
+    }
 
     /**
-     * Calculates the instantaneous rate of change, or the derivative at a point
+     * Finds every root of the equation from a to b with {@link RootFinder#getDefault()}, including
+     * tangent roots where the equation touches 0 without changing sign
      *
-     * @param x place at which the slope is calculated
-     * @return approximated slope of the tangent line at x
+     * @param a one end of the range
+     * @param b other end of the range
+     * @param tolerance largest distance between a root found and the exact root
+     * @return roots in increasing order and the number of calculations used
+     * @throws IllegalArgumentException if a or b is not finite or the tolerance is not positive
+     * @see RootFinder#findRoots(Node, double, double, double)
      */
-    public double slopeAt(double x) {
-        final double num = .0000000001d;
-        return ((calculate(x + num) - calculate(x)) / ((x + num) - (x)));
+    public RootResult findRoots(double a, double b, double tolerance) {
+        return RootFinder.getDefault().findRoots(this, a, b, tolerance);
     }
 
     /**
@@ -126,27 +254,34 @@ public class Node {
      * @param a starting value
      * @param b ending value
      * @return double value representing the approximated integral from a to b
+     * @see #integrate(double, double)
      */
     public double definiteIntegral(double a, double b) {
-        //check if they have to be swapped
-        boolean swapped = false;
-        if (a > b) {
-            double tempA = a;
-            a = b;
-            b = tempA;
-            swapped = true;
-        }
-        //approximate value
-        double summation = 0;
-        double dx = (b - a) / 10000.0;
-        for (double pos = a; pos < b; pos += dx) {
-            summation += calculate(pos) * dx;
-        }
+        return integrate(a, b).getValue();
+    }
 
+    /**
+     * Calculates the definite integral of the equation from a to b with adaptive quadrature,
+     * using the tolerances of {@link Integrator#getDefault()}
+     *
+     * @param a starting value
+     * @param b ending value
+     * @return value, error estimate and number of evaluations of the integral from a to b
+     */
+    public IntegrationResult integrate(double a, double b) {
+        return integrate(a, b, Integrator.getDefault());
+    }
 
-        if (swapped)
-            return -1.0d * summation;
-        return summation;
+    /**
+     * Calculates the definite integral of the equation from a to b with the given integrator
+     *
+     * @param a starting value
+     * @param b ending value
+     * @param integrator integrator holding the tolerances and evaluation budget
+     * @return value, error estimate and number of evaluations of the integral from a to b
+     */
+    public IntegrationResult integrate(double a, double b, Integrator integrator) {
+        return integrator.integrate(compiled(), a, b);
     }
 
 
@@ -156,35 +291,88 @@ public class Node {
      * @param n    Value to start the summation at
      * @param endN Value to end the summation at (inclusive)
      * @return Sum of the calculated values from n to endN
+     * @see #sum(long, long)
      */
     public double sum(int n, int endN) {
-        double sum = 0.0d;
-        for (; n <= endN; n++) {
-            sum += calculate(n);
-        }
-        return sum;
+        return sum((long) n, (long) endN);
+    }
+
+    /**
+     * Calculates the sum of the equation from n to endN in parallel chunks, using
+     * {@link RangeSummation#getDefault()}. The result does not depend on the number of threads
+     *
+     * @param n    Value to start the summation at
+     * @param endN Value to end the summation at (inclusive)
+     * @return Sum of the calculated values from n to endN
+     */
+    public double sum(long n, long endN) {
+        return RangeSummation.getDefault().sum(compiled(), n, endN);
+    }
+
+    /**
+     * Calculates the sum of the equation from n to endN with the given summation
+     *
+     * @param n         Value to start the summation at
+     * @param endN      Value to end the summation at (inclusive)
+     * @param summation summation holding the parallelism and chunk size
+     * @param progress  called with the number of terms summed so far after every chunk, may be null
+     * @param cancelled checked before every chunk, the sum stops once it returns true, may be null
+     * @return Sum of the calculated values from n to endN
+     * @throws java.util.concurrent.CancellationException if the sum was cancelled
+     * @see RangeSummation#sum(CompiledEquation, long, long, LongConsumer, BooleanSupplier)
+     */
+    public double sum(long n, long endN, RangeSummation summation, LongConsumer progress, BooleanSupplier cancelled) {
+        return summation.sum(compiled(), n, endN, progress, cancelled);
     }
 
     /**
      * <p>
-     * Finds the sum of the equation from n until the change is less than the precision
+     * Finds the sum of the equation from n to infinity, to within the precision
      * </p>
      *
      * <p>
      * @param n         Starting number to iterate from
-     * @param precision The maximum change between the sum of n and the sum of n + 1 to return
-     * @return sum from n until the change is less than precision
+     * @param precision The largest acceptable change between the last estimates of the sum
+     * @return sum from n to infinity
      * </p>
+     * @see #sumSeries(int, double)
      */
     public double sum(int n, double precision) {
-        double sumL = 0.0d - precision - 10;
-        double sumC = 0.0d;
-        for (; Math.abs(sumC - sumL) >= precision; n++) {
-            sumL = sumC;
-            sumC += calculate(n);
-        }
+        return sumSeries(n, precision).getValue();
+    }
 
-        return sumC;
+    /**
+     * Finds the sum of the equation from n to infinity with convergence acceleration,
+     * calculating at most 2^24 terms
+     *
+     * @param n         Starting number to iterate from
+     * @param precision The largest acceptable change between the last estimates of the sum
+     * @return value, error estimate, number of terms used and acceleration method
+     * @see #sumSeries(int, double, int)
+     */
+    public SeriesResult sumSeries(int n, double precision) {
+        return sumSeries(n, precision, 1 << 24);
+    }
+
+    /**
+     * Finds the sum of the equation from n to infinity with convergence acceleration
+     * <p>
+     * Alternating series use the Euler transform, series whose terms shrink geometrically use the
+     * Wynn epsilon algorithm and slowly converging series such as {@code 1/x^2} use Richardson
+     * extrapolation, so far fewer terms are calculated than by adding them one by one.
+     * Terms are added with compensated summation. Calculation stops when two estimates in a row
+     * change the sum by at most {@code precision}, when {@code maxTerms} terms have been calculated,
+     * or when a term is not finite, in which case the sum has not converged.
+     * </p>
+     *
+     * @param n         Starting number to iterate from
+     * @param precision The largest acceptable change between the last estimates of the sum
+     * @param maxTerms  Largest number of terms to calculate
+     * @return value, error estimate, number of terms used and acceleration method
+     * @throws IllegalArgumentException if precision is negative or maxTerms is not positive
+     */
+    public SeriesResult sumSeries(int n, double precision, int maxTerms) {
+        return SeriesAccelerator.sum(compiled(), n, precision, maxTerms);
     }
 
 
@@ -192,42 +380,76 @@ public class Node {
      * <p>
      * Creates a tree representing the taylor expansion from 0 to {@code k}  at the point {@code c}
      * </p>
-     * <P>
+     * <p>
+     * The coefficients are calculated numerically by {@link #taylorCoefficients(int, double)}, and the
+     * polynomial is built in Horner form, {@code a0 + (x-c)(a1 + (x-c)(a2 + ...))}, so the tree has
+     * O(k) nodes. Terms whose coefficient is 0 are left out.
+     * </p>
      * @param k The last term of the expansion to be added to the tree
      * @param c Evaluated point of derivative in each term
      * @return Node representing taylor expansion from 0 to k, inclusive, at point c
-     * </P>
+     * @throws IllegalArgumentException if k is negative
+     * @throws IllegalStateException if the node has more than one variable
      */
     public Node taylorExpansion(int k, double c) {
-        Node expansion = new Node("+");
-        double tempC = c * -1.0;
-
-
-        Node last = new Node(this);
-        Node temp = expansion;
-        for (int i = 0; i <= k; i++) {
-
-            temp.left = new Node("/");
-            temp.left.right = new Node(Double.toString(Util.factorial(i)));
+        //the expansion is over slot 0, trees using other slots are rejected before any work is done
+        compiled().requireSingleVariable();
+        DerivativeEvent event = new DerivativeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Node expansion = buildTaylorExpansion(k, c);
+        CalculatorMetrics.getDefault().derived(true, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.kind = "TAYLOR";
+            event.order = k;
+            event.nodes = countDistinct(this);
+            event.resultNodes = countDistinct(expansion);
+            event.commit();
+        }
+        return expansion;
+    }
 
-            double dervC = last.calculate(c);
-            temp.left.left = new Node("*");
-            temp.left.left.left = new Node(Double.toString(dervC));
-            temp.left.left.right = new Node("^");
-            temp.left.left.right.right = new Node(Integer.toString(i));
-            temp.left.left.right.left = new Node("+");
-            temp.left.left.right.left.left = new Node("x");
+    /**
+     * Builds the Horner form of the taylor expansion from 0 to k at c
+     */
+    private Node buildTaylorExpansion(int k, double c) {
+        double[] coefficients = taylorCoefficients(k, c);
 
-            temp.left.left.right.left.right = new Node(Double.toString(tempC));
+        //x - c, shared by every level of the polynomial, in the variable of slot 0, x if the node has none
+        String[] names = getVariables();
+        Node variable = new Node(0, names.length > 0 && names[0] != null ? names[0] : "x");
+        Node shift;
+        if (c == 0.0d) {
+            shift = variable;
+        } else {
+            shift = new Node(Operator.ADD, variable, new Node(-c));
+        }
 
-            last = last.calculateDerivative();
-            temp = temp.right;
-            temp = new Node("+");
+        Node expansion = new Node(coefficients[k]);
+        for (int i = k - 1; i >= 0; i--) {
+            Node product = new Node(Operator.MULTIPLY, shift, expansion);
+            expansion = coefficients[i] == 0.0d ? product : new Node(Operator.ADD, new Node(coefficients[i]), product);
         }
 
         return expansion;
     }
 
+    /**
+     * Calculates the coefficients of the taylor expansion from 0 to {@code k} at the point {@code c}
+     * <p>
+     * Uses Taylor mode automatic differentiation: the equation is calculated once on truncated
+     * power series instead of numbers, which takes O(k^2) time and builds no derivative trees.
+     * </p>
+     *
+     * @param k The last term of the expansion
+     * @param c Point the expansion is centered on
+     * @return array of length k + 1, where index i holds the i-th derivative at c divided by i!
+     * @throws IllegalArgumentException if k is negative
+     */
+    public double[] taylorCoefficients(int k, double c) {
+        return TaylorSeries.coefficients(compiled(), k, c);
+    }
+
     /**
      * Creates and returns a Node representing a Maclaurin expansion from 0 to {@code k}
      *
@@ -245,407 +467,261 @@ public class Node {
      * Since Node is a superclass of Equation and all mathematical methods are in Node,
      * the returned derivative can execute all the methods
      * </P>
+     * With several variables, this is the partial derivative with respect to the variable in slot 0
+     *
      * @return derivative of the the Node
      */
     public Node calculateDerivative() {
-        Node n;
+        return derivativeOf(0);
+    }
+
+    /**
+     * Calculates the partial derivative with respect to one variable, every other variable
+     * is treated as a constant
+     *
+     * @param variable name of the variable, not case sensitive
+     * @return partial derivative of the Node, 0 if the Node does not use the variable
+     */
+    public Node calculateDerivative(String variable) {
+        String[] names = getVariables();
+        for (int i = 0; i < names.length; i++)
+            if (variable.equalsIgnoreCase(names[i]))
+                return derivativeOf(i);
+        return new Node(0.0d);
+    }
+
+    /**
+     * Creates the hash-consed form of this node, where structurally identical
+     * subtrees are stored and calculated once
+     *
+     * @return ExpressionDag of this node
+     */
+    public ExpressionDag toDag() {
+        return new ExpressionDag(this);
+    }
+
+    /**
+     * Returns the derivative with respect to the variable in slot, counted by {@link CalculatorMetrics}
+     */
+    private Node derivativeOf(int slot) {
+        DerivativeEvent event = new DerivativeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Node derivative = derivative(slot, new IdentityHashMap<>());
+        CalculatorMetrics.getDefault().derived(false, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.kind = "DERIVATIVE";
+            event.order = 1;
+            event.nodes = countDistinct(this);
+            event.resultNodes = countDistinct(derivative);
+            event.commit();
+        }
+        return derivative;
+    }
+
+    /**
+     * Returns the derivative of this node, reusing the derivative of any node that was already
+     * differentiated. Derivatives share subtrees, so without this the same subtree would be
+     * differentiated once for every path that reaches it
+     *
+     * @param slot slot of the variable the derivative is taken with respect to
+     * @param memo derivatives already calculated, keyed by node identity
+     * @return derivative of the node
+     */
+    private Node derivative(int slot, Map<Node, Node> memo) {
+        Node d = memo.get(this);
+        if (d == null) {
+            d = differentiate(slot, memo);
+            memo.put(this, d);
+        }
+        return d;
+    }
+
+    /**
+     * Builds the derivative of this node, see {@link #calculateDerivative()}
+     *
+     * @param slot slot of the variable the derivative is taken with respect to
+     * @param memo derivatives already calculated, keyed by node identity
+     * @return derivative of the node
+     */
+    private Node differentiate(int slot, Map<Node, Node> memo) {
+        //the node without its function, whose derivative is multiplied by the derivative of the function
+        Node inner = type == EdgeType.DEFAULT ? this : new Node(this, EdgeType.DEFAULT);
 
         if (type == EdgeType.COSINE || type == EdgeType.SINE) {
+            Node n = new Node(Operator.MULTIPLY, inner.derivative(slot, memo),
+                    new Node(this, (type == EdgeType.SINE) ? EdgeType.COSINE : EdgeType.SINE));
 
-            n = new Node("*");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            temp.type = ((type == EdgeType.SINE) ? EdgeType.COSINE : EdgeType.SINE);
-            n.right = temp;
-
-            if (type == EdgeType.COSINE) {
-                Node a = new Node("*");
-                a.left = new Node("-1");
-                a.right = n;
-                return a;
-            }
+            if (type == EdgeType.COSINE)
+                return new Node(Operator.MULTIPLY, new Node(-1.0d), n);
             return n;
         }
 
         if (type == EdgeType.TANGENT) {
-            n = new Node("*");
-            n.right = new Node("^");
-            n.right.right = new Node("2");
-            n.right.left = new Node(this);
-            n.right.left.type = EdgeType.SECANT;
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            return n;
+            return new Node(Operator.MULTIPLY, inner.derivative(slot, memo),
+                    new Node(Operator.POWER, new Node(this, EdgeType.SECANT), new Node(2.0d)));
         }
 
         if (type == EdgeType.COSECANT) {
-            n = new Node("*");
-            n.right = new Node("*");
-            n.right.left = new Node("*");
-            n.right.left.left = new Node("-1");
-            n.right.left.right = new Node(this);
-            n.right.left.right.type = EdgeType.COSECANT;
-            n.right.right = new Node(this);
-            n.right.right.type = EdgeType.COTANGENT;
-
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-
-            return n;
+            return new Node(Operator.MULTIPLY, inner.derivative(slot, memo),
+                    new Node(Operator.MULTIPLY,
+                            new Node(Operator.MULTIPLY, new Node(-1.0d), new Node(this, EdgeType.COSECANT)),
+                            new Node(this, EdgeType.COTANGENT)));
         }
 
         if (type == EdgeType.SECANT) {
-            n = new Node("*");
-            n.right = new Node("*");
-            n.right.left = new Node(this);
-            n.right.left.type = EdgeType.SECANT;
-            n.right.right = new Node(this);
-            n.right.right.type = EdgeType.TANGENT;
-
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            return n;
+            return new Node(Operator.MULTIPLY, inner.derivative(slot, memo),
+                    new Node(Operator.MULTIPLY, new Node(this, EdgeType.SECANT), new Node(this, EdgeType.TANGENT)));
         }
+
         if (type == EdgeType.COTANGENT) {
-            n = new Node("*");
-            n.right = new Node("*");
-            n.right.left = new Node("-1");
-            n.right.right = new Node("^");
-            n.right.right.left = new Node(this);
-            n.right.right.left.type = EdgeType.COSECANT;
-            n.right.right.right = new Node("2");
-
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            return n;
+            return new Node(Operator.MULTIPLY, inner.derivative(slot, memo),
+                    new Node(Operator.MULTIPLY, new Node(-1.0d),
+                            new Node(Operator.POWER, new Node(this, EdgeType.COSECANT), new Node(2.0d))));
         }
 
         if (type == EdgeType.NATURAL_LOG) {
-            n = new Node("/");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = left.calculateDerivative();
-            n.right = temp;
-            return n;
+            return new Node(Operator.DIVIDE, inner.derivative(slot, memo), inner);
         }
 
         if (type == EdgeType.LOG_BASE_TEN) {
-            n = new Node("/");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = left.calculateDerivative();
-            n.right = new Node("*");
-            n.right.left = new Node(Double.toString(Math.log(10)));
-            n.right.right = temp;
-            return n;
+            return new Node(Operator.DIVIDE, inner.derivative(slot, memo),
+                    new Node(Operator.MULTIPLY, new Node(Math.log(10)), inner));
         }
 
         if (type == EdgeType.ARCCOSINE) {
-            n = new Node("/");
-            n.left = new Node("*");
-            n.left.left = new Node("-1");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left.right = temp.calculateDerivative();
-
-            n.right = new Node("^");
-            n.right.right = new Node(".5");
-            n.right.left = new Node("+");
-            n.right.left.left = new Node("1");
-            n.right.left.right = new Node("*");
-            n.right.left.right.left = new Node("-1");
-            n.right.left.right.right = new Node("^");
-            n.right.left.right.right.left = temp;
-            n.right.left.right.right.right = new Node("2");
-
-            return n;
+            return new Node(Operator.DIVIDE,
+                    new Node(Operator.MULTIPLY, new Node(-1.0d), inner.derivative(slot, memo)),
+                    new Node(Operator.POWER, oneMinusSquare(inner), new Node(0.5d)));
         }
 
         if (type == EdgeType.ARCSINE) {
-            n = new Node("/");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-
-            n.right = new Node("^");
-            n.right.right = new Node(".5");
-            n.right.left = new Node("+");
-            n.right.left.left = new Node("1");
-            n.right.left.right = new Node("*");
-            n.right.left.right.left = new Node("-1");
-            n.right.left.right.right = new Node("^");
-            n.right.left.right.right.left = temp;
-            n.right.left.right.right.right = new Node("2");
-
-            return n;
+            return new Node(Operator.DIVIDE, inner.derivative(slot, memo),
+                    new Node(Operator.POWER, oneMinusSquare(inner), new Node(0.5d)));
         }
 
         if (type == EdgeType.ARCTANGENT) {
-            n = new Node("/");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            n.right = new Node("+");
-            n.right.left = new Node("1");
-            n.right.right = new Node("^");
-            n.right.right.left = temp;
-            n.right.right.right = new Node("2");
-
-            return n;
+            return new Node(Operator.DIVIDE, inner.derivative(slot, memo),
+                    new Node(Operator.ADD, new Node(1.0d), new Node(Operator.POWER, inner, new Node(2.0d))));
         }
 
         if (type == EdgeType.ARCSECANT) {
-            n = new Node("/");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left = temp.calculateDerivative();
-            n.right = new Node("*");
-
-            n.right.left = temp;
-            n.right.left.type = EdgeType.ABSOLUTE_VALUE;
-            temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.right.right = new Node("^");
-            n.right.right.right = new Node(".5");
-            n.right.right.left = new Node("+");
-            n.right.right.left.left = new Node("^");
-            n.right.right.left.left.left = temp;
-            n.right.right.left.left.right = new Node("2");
-            n.right.right.left.right = new Node("-1");
-
-            return n;
+            return new Node(Operator.DIVIDE, inner.derivative(slot, memo),
+                    new Node(Operator.MULTIPLY, new Node(this, EdgeType.ABSOLUTE_VALUE), squareMinusOneRoot(inner)));
         }
 
 
         if (type == EdgeType.ARCCOSECANT) {
-            n = new Node("/");
-            n.left = new Node("*");
-            n.left.left = new Node("-1");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left.right = temp.calculateDerivative();
-
-            n.right = new Node("*");
-            n.right.left = temp;
-            n.right.left.type = EdgeType.ABSOLUTE_VALUE;
-            temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.right.right = new Node("^");
-            n.right.right.right = new Node(".5");
-            n.right.right.left = new Node("+");
-            n.right.right.left.right = new Node("-1");
-            n.right.right.left.left = new Node("^");
-            n.right.right.left.left.right = new Node("2");
-            n.right.right.left.left.left = temp;
-            return n;
+            return new Node(Operator.DIVIDE,
+                    new Node(Operator.MULTIPLY, new Node(-1.0d), inner.derivative(slot, memo)),
+                    new Node(Operator.MULTIPLY, new Node(this, EdgeType.ABSOLUTE_VALUE), squareMinusOneRoot(inner)));
         }
 
         if (type == EdgeType.ARCCOTANGENT) {
-            n = new Node("/");
-            n.left = new Node("*");
-            n.left.left = new Node("-1");
-            Node temp = new Node(this);
-            temp.type = EdgeType.DEFAULT;
-            n.left.right = temp.calculateDerivative();
-
-            n.right = new Node("+");
-            n.right.right = new Node("1");
-            n.right.left = new Node("^");
-            n.right.left.left = temp;
-            n.right.left.right = new Node("2");
-            return n;
-
+            return new Node(Operator.DIVIDE,
+                    new Node(Operator.MULTIPLY, new Node(-1.0d), inner.derivative(slot, memo)),
+                    new Node(Operator.ADD, new Node(Operator.POWER, inner, new Node(2.0d)), new Node(1.0d)));
         }
 
         //way to find derivative of an absolute value
         //square the value, making it positive, then take
         // the square root returning it to its original value
         if (type == EdgeType.ABSOLUTE_VALUE) {
-            n = new Node("^");
-            n.right = new Node(".5");
-            n.left = new Node("^");
-            n.left.right = new Node("2");
-            n.left.left = new Node(this);
-            n.left.left.type = EdgeType.DEFAULT;
-
-            return n.calculateDerivative();
+            Node n = new Node(Operator.POWER, new Node(Operator.POWER, inner, new Node(2.0d)), new Node(0.5d));
+            return n.derivative(slot, memo);
         }
 
         //Breaks derivative into two simpler parts and add them together
-        if (value.equals("+")) {
-            n = new Node("+");
-            n.left = left.calculateDerivative();
-            n.right = right.calculateDerivative();
-            return n;
+        if (operator == Operator.ADD) {
+            return new Node(Operator.ADD, left.derivative(slot, memo), right.derivative(slot, memo));
         }
 
 
-        if (value.equals("*")) {
-            if (type == EdgeType.DEFAULT) {
-                //tests if the value is simply (constant)*x
-                if (Util.isNumerical(left.value.charAt(0))) {
-                    if (right.value.contains("x") && right.type == EdgeType.DEFAULT) {
-                        return new Node(left);
-                    }
+        if (operator == Operator.MULTIPLY) {
+            //tests if the value is simply (constant)*x
+            if (left.isConstant()) {
+                if (right.operator == Operator.VARIABLE && right.slot == slot && right.type == EdgeType.DEFAULT) {
+                    return left;
                 }
             }
             //same as above fragment except its reversed: x*(constant)
-            if (Util.isNumerical(right.value.charAt(0))) {
-                if (left.value.contains("x") && left.type == EdgeType.DEFAULT) {
-                    return new Node(right);
+            if (right.isConstant()) {
+                if (left.operator == Operator.VARIABLE && left.slot == slot && left.type == EdgeType.DEFAULT) {
+                    return right;
                 }
             }
 
             //product rule
             //left*d(right) + right*d(left)
-            n = new Node("+");
-            n.left = new Node("*");
-            n.left.left = left;
-            n.left.right = right.calculateDerivative();
-
-            n.right = new Node("*");
-            n.right.left = right;
-            n.right.right = left.calculateDerivative();
-            return n;
+            return new Node(Operator.ADD,
+                    new Node(Operator.MULTIPLY, left, right.derivative(slot, memo)),
+                    new Node(Operator.MULTIPLY, right, left.derivative(slot, memo)));
         }
 
-        if (value.equals("^")) {
+        if (operator == Operator.POWER) {
 
-            if (Util.isNumerical(right.value.charAt(0))) {
-                n = new Node("*");
-                n.right = new Node("^");
-                n.right.left = new Node(left);
-                n.right.right = new Node(Double.toString(Double.parseDouble(right.value) - 1));
-                n.left = new Node("*");
-                n.left.right = left.calculateDerivative();
-                n.left.left = new Node(right);
-                return n;
+            if (right.isConstant()) {
+                return new Node(Operator.MULTIPLY,
+                        new Node(Operator.MULTIPLY, right, left.derivative(slot, memo)),
+                        new Node(Operator.POWER, left, new Node(right.constant - 1)));
             }
+
+            //general power rule
+            //left^right * ( d(right)*ln(left) + right*d(left)/left )
+            //ln has to be applied on top of an existing function
+            Node log = left.type == EdgeType.DEFAULT ? new Node(left, EdgeType.NATURAL_LOG)
+                    : new Node(Operator.ADD, EdgeType.NATURAL_LOG, left, new Node(0.0d));
+            return new Node(Operator.MULTIPLY, this,
+                    new Node(Operator.ADD,
+                            new Node(Operator.MULTIPLY, right.derivative(slot, memo), log),
+                            new Node(Operator.DIVIDE,
+                                    new Node(Operator.MULTIPLY, right, left.derivative(slot, memo)), left)));
         }
 
         // quotient rule
         // ( low*d(high) - high*d(low) ) / (low^2)
         // low = right, high = left
         // ( right * d(left)   -   left * d(right) ) / right^2
-        if (value.equals("/")) {
-            n = new Node("/");
-            n.right = new Node("^");
-            n.right.left = new Node(right);
-            n.right.right = new Node("2");
-
-
-            n.left = new Node("+");
-            n.left.left = new Node("*");
-            n.left.left.left = new Node(right);
-            n.left.left.right = left.calculateDerivative();
-
-            n.left.right = new Node("*");
-            n.left.right.left = new Node("-1");
-            n.left.right.right = new Node("*");
-            n.left.right.right.left = new Node(left);
-            n.left.right.right.right = right.calculateDerivative();
-
-            return n;
+        if (operator == Operator.DIVIDE) {
+            return new Node(Operator.DIVIDE,
+                    new Node(Operator.ADD,
+                            new Node(Operator.MULTIPLY, right, left.derivative(slot, memo)),
+                            new Node(Operator.MULTIPLY, new Node(-1.0d),
+                                    new Node(Operator.MULTIPLY, left, right.derivative(slot, memo)))),
+                    new Node(Operator.POWER, right, new Node(2.0d)));
         }
 
         //base cases
-        if (value.equals("x")) {
-            return new Node("1");
+        if (operator == Operator.VARIABLE) {
+            return new Node(this.slot == slot ? 1.0d : 0.0d);
         }
-        if (Util.isNumerical(value.charAt(0))) {
-            return new Node("0");
+        if (operator == Operator.CONSTANT) {
+            return new Node(0.0d);
         }
 
         return null;
     }
 
     /**
-     * Simplifies the node by checking for unnecessary constant operations
-     * and other factors that make the tree needlessly complex
+     * Simplifies the node with rewrite rules repeated until they change nothing: constant subtrees are
+     * folded, chains of + and * are flattened, like terms and equal factors are combined, and
+     * operations such as {@code 0*f}, {@code 1*f} and {@code f^1} are removed.
+     * The node is not changed
+     *
+     * @return simplified copy of the node, which shares its repeated subtrees
+     * @see #simplifyAndReport()
      */
     public Node simplify() {
-        Node n;
-
-        if(left == null){
-            return new Node(this);
-        }
-
-        if( Util.isNumerical(left.value.charAt(0)) &&
-                (this.type == EdgeType.DEFAULT ||
-                        left.type == EdgeType.DEFAULT)){
-
-            EdgeType targetType = this.type == EdgeType.DEFAULT ? left.type : this.type;
-            double leftValue = Double.parseDouble(left.value);
-
-            n = simplifyCommutative(left, right, leftValue, targetType);
-
-            if(n != null){
-                return n;
-            }
-
-            if(value.equals("/")){
-                if(leftValue == 0.0){
-                    n = new Node("0", targetType);
-                    return n;
-                }
-            }
-
-            if(value.equals("^")){
-                if(leftValue == 1.0){
-                    n = new Node("1", targetType);
-                    return n;
-                }
-            }
-        }
-
-        if( Util.isNumerical(right.value.charAt(0)) &&
-                (this.type == EdgeType.DEFAULT || right.type == EdgeType.DEFAULT)){
-
-            EdgeType targetType = this.type == EdgeType.DEFAULT ? right.type : this.type;
-            double rightValue = Double.parseDouble(right.value);
-
-            n = simplifyCommutative(right, left, rightValue, targetType);
-            if(n != null){
-                return n;
-            }
-
-            if(value.equals("/")){
-                if(rightValue == 1.0){
-                    n = new Node(left);
-                    n.type = targetType;
-                    return n.simplify();
-                }
-            }
-
-            if(value.equals("^")){
-                if(rightValue == 0.0){
-                    n = new Node("1", targetType);
-                    return n;
-                }
-
-                if(rightValue == 1.0){
-                    n = new Node(left);
-                    n.type = targetType;
-                    return n.simplify();
-                }
-            }
-
-        }
-
-        if(Util.isNumerical(left.value.charAt(0)) && Util.isNumerical(right.value.charAt(0))
-            && left.type == EdgeType.DEFAULT && right.type == EdgeType.DEFAULT) {
-            double newVal = Double.parseDouble(left.value) + Double.parseDouble(right.value);
-            n = new Node(Double.toString(newVal), this.type);
-            return n;
-        }
+        return Simplifier.simplify(this).getNode();
+    }
 
-        n = new Node(this);
-        return n;
+    /**
+     * Simplifies the node like {@link #simplify()} and reports how much smaller it became
+     *
+     * @return simplified node, its number of nodes before and after, and the number of passes
+     */
+    public SimplificationResult simplifyAndReport() {
+        return Simplifier.simplify(this);
     }
 
     /**
@@ -659,11 +735,17 @@ public class Node {
     @Override
     public String toString(){
 
+        if(operator == Operator.CONSTANT){
+            return  type.toString() + Util.format(constant);
+        }
+        if(operator == Operator.VARIABLE){
+            return  type.toString() + name;
+        }
         if(this.left == null){
-            return  type.toString() + value;
+            return  type.toString() + operator;
         }
 
-        return type.toString()+ "(" + left.toString() + value + right.toString() + ")";
+        return type.toString()+ "(" + left.toString() + operator + right.toString() + ")";
     }
 
 
@@ -671,42 +753,36 @@ public class Node {
     //_________private methods_________//
 
     /**
+     * Calculates the value of the node by walking the tree, without compiling it.
+     * Shared subtrees are calculated once for every parent, so this is only meant for small trees
+     * calculated once, such as constants being folded.
+     * Package private because it is meant for use in the core package exclusively
      *
-     * Helper method to decrease clutter in simplify method
-     * With the given parameters, it checks for possible extra operations and fixes them for
-     *
-     * @param target Target Node to check
-     * @param other Other node in the tree
-     * @param parsedValue parsed value of target
-     * @param targetType the new targets type
-     * @return simplified Node, or null if no simplification occurred
+     * @param x value of x to be calculated
+     * @return value of node with branch type accounted for
+     * @throws IllegalStateException if the node has a variable other than slot 0
      */
-    private Node simplifyCommutative(Node target, Node other, double parsedValue, EdgeType targetType){
-        Node n;
-
-        if(value.equals("+")){
-            if(parsedValue == 0.0){
-
-                n = new Node(other);
-                n.type = targetType;
-                return n.simplify();
-            }
+    double calculateTree(double x) {
+        switch (type) {
+            case DEFAULT:        return rawValue(x);
+            case NATURAL_LOG:    return Math.log(rawValue(x));
+            case LOG_BASE_TEN:   return Math.log10(rawValue(x));
+            case SINE:           return Math.sin(rawValue(x));
+            case COSINE:         return Math.cos(rawValue(x));
+            case TANGENT:        return Math.tan(rawValue(x));
+            case COSECANT:       return 1.0d / Math.sin(rawValue(x));
+            case SECANT:         return 1.0d / Math.cos(rawValue(x));
+            case COTANGENT:      return 1.0d / Math.tan(rawValue(x));
+            case ARCSINE:        return Math.asin(rawValue(x));
+            case ARCCOSINE:      return Math.acos(rawValue(x));
+            case ARCTANGENT:     return Math.atan(rawValue(x));
+            case ARCCOSECANT:    return Math.asin(1.0d / rawValue(x));
+            case ARCSECANT:      return Math.acos(1.0d / rawValue(x));
+            case ARCCOTANGENT:   return Math.atan(1.0d / rawValue(x));
+            case ABSOLUTE_VALUE: return Math.abs(rawValue(x));
         }
 
-        if(value.equals("*")){
-            if(parsedValue == 0.0){
-                n = new Node("0", targetType);
-                return n;
-            }
-
-            if(parsedValue == 1.0){
-                n = new Node(other);
-                n.type = targetType;
-                return n.simplify();
-            }
-        }
-
-        return null;
+        return 0.0d;
     }
 
     /**
@@ -716,40 +792,112 @@ public class Node {
      * @return value without regard to current node's branch type
      */
     private double rawValue(double x) {
-        if (value.equals("*"))
-            return left.calculate(x) * right.calculate(x);
-        if (value.equals("/"))
-            return left.calculate(x) / right.calculate(x);
-        if (value.equals("^"))
-            return Math.pow(left.calculate(x), right.calculate(x));
-        if (value.equals("+"))
-            return left.calculate(x) + right.calculate(x);
+        switch (operator) {
+            case MULTIPLY: return left.calculateTree(x) * right.calculateTree(x);
+            case DIVIDE:   return left.calculateTree(x) / right.calculateTree(x);
+            case POWER:    return Math.pow(left.calculateTree(x), right.calculateTree(x));
+            case ADD:      return left.calculateTree(x) + right.calculateTree(x);
+            case VARIABLE:
+                if (slot != 0)
+                    throw new IllegalStateException("Variable <" + name + "> needs calculate(double[])");
+                return x;
+            default:       return constant;
+        }
+    }
+
+    /**
+     * @return {@code 1 - node^2}, under the square root of the derivatives of arcsine and arccosine
+     */
+    private static Node oneMinusSquare(Node node) {
+        return new Node(Operator.ADD, new Node(1.0d),
+                new Node(Operator.MULTIPLY, new Node(-1.0d), new Node(Operator.POWER, node, new Node(2.0d))));
+    }
+
+    /**
+     * @return {@code (node^2 - 1)^0.5}, in the derivatives of arcsecant and arccosecant
+     */
+    private static Node squareMinusOneRoot(Node node) {
+        return new Node(Operator.POWER,
+                new Node(Operator.ADD, new Node(Operator.POWER, node, new Node(2.0d)), new Node(-1.0d)),
+                new Node(0.5d));
+    }
 
-        return toDouble(x);
+    private static void collectVariables(Node node, String[] names, Map<Node, Node> visited) {
+        if (node == null || visited.put(node, node) != null)
+            return;
+        if (node.operator == Operator.VARIABLE)
+            names[node.slot] = node.name;
+        collectVariables(node.left, names, visited);
+        collectVariables(node.right, names, visited);
     }
 
+    /**
+     * Counts the nodes of a tree, nodes shared by several parents once
+     *
+     * @param root root of the tree
+     * @return number of distinct nodes
+     */
+    static int countDistinct(Node root) {
+        IdentityHashMap<Node, Boolean> visited = new IdentityHashMap<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (visited.put(node, Boolean.TRUE) != null)
+                continue;
+            if (node.left != null)
+                pending.push(node.left);
+            if (node.right != null)
+                pending.push(node.right);
+        }
+        return visited.size();
+    }
 
     /**
-     * Parses the value, returns the value of x if it is x, or -x if it is -x.
-     * Otherwise parses the value as a double
+     * Finds the nodes reached from more than one parent, which compiled forms calculate once.
+     * Constants and variables without a function are left out, repeating them is as cheap as
+     * loading a stored value, but a leaf with a function such as {@code sinx} is kept
      *
-     * @param x value of x to be calculated
-     * @return numerical value of the String field value
-     * @throws InvalidEquationException Throws when attempting to parse an invalid value
+     * @param root root of the tree
+     * @return shared nodes, compared by identity
      */
-    private double toDouble(double x) throws InvalidEquationException {
-        if (value.equalsIgnoreCase("x"))
-            return x;
-        if (value.equalsIgnoreCase("-x"))
-            return -1 * x;
+    static Set<Node> sharedSubtrees(Node root) {
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Node> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        visited.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (node.left == null)
+                continue;
+            for (Node child : new Node[]{node.left, node.right}) {
+                if (visited.add(child))
+                    pending.push(child);
+                else if (child.left != null || child.type != EdgeType.DEFAULT)
+                    shared.add(child);
+            }
+        }
+        return shared;
+    }
 
-        double d;
-        try {
-            d = Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            throw new InvalidEquationException("Failed to calculate value <" + value + ">");
+    /**
+     * @return compiled form of this node, compiled on the first call
+     */
+    CompiledEquation compiled() {
+        CompiledEquation c = compiled;
+        if (c == null) {
+            c = new CompiledEquation(this);
+            compiled = c;
         }
-        return d;
+        return c;
+    }
+
+    /**
+     * @return true if the node is a constant without a function applied to it
+     */
+    boolean isConstant() {
+        return operator == Operator.CONSTANT && type == EdgeType.DEFAULT;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package core;
+
+
+/**
+ * enum to represent what kind of value a Node holds
+ *
+ * A Node is either one of the four binary operators, a constant or the variable
+ */
+public enum Operator {
+
+    ADD('+'),
+    MULTIPLY('*'),
+    DIVIDE('/'),
+    POWER('^'),
+
+    //leaf holding a double value
+    CONSTANT(' '),
+    //leaf representing x
+    VARIABLE('x');
+
+    private char symbol;
+    Operator(char symbol){
+        this.symbol = symbol;
+    }
+
+    /**
+     * Takes in a character and returns the binary operator it represents
+     *
+     * @param c Character to be compared with valid operators
+     * @return Operator represented by c
+     * @throws InvalidEquationException if c is not an operator
+     */
+    public static Operator getOperator(char c) throws InvalidEquationException {
+        switch (c) {
+            case '+': return ADD;
+            case '*': return MULTIPLY;
+            case '/': return DIVIDE;
+            case '^': return POWER;
+        }
+        throw new InvalidEquationException("Invalid operator <" + c + ">");
+    }
+
+    /**
+     * @return true if the operator has a left and right operand
+     */
+    public boolean isBinary() {
+        return this != CONSTANT && this != VARIABLE;
+    }
+
+    @Override
+    public String toString() {
+        return Character.toString(symbol);
+    }
+}
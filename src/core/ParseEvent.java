@@ -0,0 +1,36 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * ParseEvent Class
+ * <p>
+ *     Flight Recorder event for parsing a String into a tree, see {@link CalculatorMetrics} for
+ *     the counters that are always kept.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+@Name("calculator.Parse")
+@Label("Parse Equation")
+@Category("Calculator")
+@Description("A String parsed into a tree")
+final class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Length")
+    @Description("Number of characters of the equation")
+    int length;
+
+    @Label("Variables")
+    int variables;
+
+    @Label("Nodes")
+    @Description("Number of nodes of the tree, 0 if the equation is not valid")
+    int nodes;
+
+    @Label("Failed")
+    boolean failed;
+
+}
@@ -0,0 +1,477 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser Class
+ * <p>
+ *     Parses a String into a binary syntax tree in a single left to right pass.
+ *     A tokenizer reads one token at a time from the String, and a precedence climbing parser
+ *     builds the tree from the tokens, so parsing takes time proportional to the length of the String.
+ * </p>
+ * <p>
+ *     Order of operations, from loosest to tightest:
+ *     <ul>
+ *         <li>{@code +} and {@code -}, left to right</li>
+ *         <li>{@code *} and {@code /}, left to right</li>
+ *         <li>unary minus</li>
+ *         <li>implicit multiplication, such as {@code 2x} or {@code (x+1)(x-1)}</li>
+ *         <li>{@code ^}, right to left</li>
+ *         <li>functions, which apply to the value or parenthesis directly after them, such as {@code sin(x)} or {@code lnx}</li>
+ *     </ul>
+ *     {@code pi} and {@code e} are replaced with their values. Spaces are ignored and the String is not case sensitive.
+ * </p>
+ * <p>
+ *     Variables are declared before parsing, {@code x} by default, and each one is resolved to the slot of
+ *     its index in the declaration, so calculating a value reads {@code variables[slot]} without looking up
+ *     any name. Names are read greedily, so with the variables {@code x} and {@code y}, {@code xy} is x times y.
+ * </p>
+ * <p>
+ *     Subtraction {@code a-b} is represented as {@code a+(-1*b)}. Chains of additions and multiplications
+ *     are built as balanced trees, so long equations do not create deep trees.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Equation
+ */
+class Parser {
+
+    //_________Tokens_________//
+    private static final int END = 0;
+    private static final int NUMBER = 1;
+    private static final int VARIABLE = 2;
+    private static final int FUNCTION = 3;
+    private static final int PLUS = 4;
+    private static final int MINUS = 5;
+    private static final int TIMES = 6;
+    private static final int DIVIDE = 7;
+    private static final int POWER = 8;
+    private static final int LEFT = 9;
+    private static final int RIGHT = 10;
+
+    //names of functions from EdgeType, pi and e, variables are declared for each parse
+    private static final String[] NAMES;
+    private static final EdgeType[] NAME_TYPES;
+    static {
+        List<String> names = new ArrayList<>();
+        List<EdgeType> types = new ArrayList<>();
+        for (EdgeType t : EdgeType.values()) {
+            if (t == EdgeType.DEFAULT)
+                continue;
+            for (String identifier : t.getIdentifiers()) {
+                names.add(identifier);
+                types.add(t);
+            }
+        }
+        names.add("pi");
+        types.add(EdgeType.DEFAULT);
+        names.add("e");
+        types.add(EdgeType.DEFAULT);
+        NAMES = names.toArray(new String[0]);
+        NAME_TYPES = types.toArray(new EdgeType[0]);
+    }
+
+    //_________Fields_________//
+    private final String equation;
+    private final String[] variables;
+    private int position;
+
+    //current token
+    private int token;
+    private int tokenStart;
+    private double number;
+    private EdgeType function;
+    private int slot;
+
+    private Parser(String equation, String[] variables) {
+        this.equation = equation;
+        this.variables = variables;
+    }
+
+    /**
+     * Parses the String into a tree with the single variable x
+     *
+     * @param equation String to be parsed
+     * @return root Node of the parsed tree
+     * @throws InvalidEquationException if the String is not a valid equation
+     */
+    static Node parse(String equation) throws InvalidEquationException {
+        return parse(equation, new String[]{"x"});
+    }
+
+    /**
+     * Parses the String into a tree, the variable {@code variables[i]} is given slot i
+     *
+     * @param equation String to be parsed
+     * @param variables names of the variables, already checked by {@link #checkVariables(String[])}
+     * @return root Node of the parsed tree
+     * @throws InvalidEquationException if the String is not a valid equation
+     */
+    static Node parse(String equation, String[] variables) throws InvalidEquationException {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Node n = null;
+        try {
+            n = parseTree(equation, variables);
+            return n;
+        } finally {
+            CalculatorMetrics.getDefault().parsed(equation.length(), n == null, System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.length = equation.length();
+                event.variables = variables.length;
+                event.nodes = n == null ? 0 : Node.countDistinct(n);
+                event.failed = n == null;
+                event.commit();
+            }
+        }
+    }
+
+    private static Node parseTree(String equation, String[] variables) throws InvalidEquationException {
+        Parser parser = new Parser(equation, variables);
+        parser.next();
+        if (parser.token == END)
+            throw new InvalidEquationException("Invalid equation <" + equation + ">");
+
+        Node n;
+        try {
+            n = parser.parseSum();
+        } catch (StackOverflowError e) {
+            throw new InvalidEquationException("Equation is nested too deeply <" + abbreviate(equation) + ">");
+        }
+        if (parser.token != END)
+            throw parser.unexpected();
+        return n;
+    }
+
+
+    /**
+     * Checks that every name is made of letters, is not a function, pi or e, and is declared once
+     *
+     * @param variables names of the variables
+     * @return the names in lowercase
+     * @throws IllegalArgumentException if a name is not a valid variable
+     */
+    static String[] checkVariables(String[] variables) {
+        String[] names = new String[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i].toLowerCase();
+            boolean letters = !name.isEmpty();
+            for (int j = 0; j < name.length(); j++)
+                letters &= Character.isLetter(name.charAt(j));
+            if (!letters)
+                throw new IllegalArgumentException("Invalid variable name <" + variables[i] + ">");
+            for (String reserved : NAMES)
+                if (reserved.equals(name))
+                    throw new IllegalArgumentException("Variable name <" + variables[i] + "> is already a name");
+            for (int j = 0; j < i; j++)
+                if (names[j].equals(name))
+                    throw new IllegalArgumentException("Variable <" + variables[i] + "> is declared twice");
+            names[i] = name;
+        }
+        return names;
+    }
+
+
+    //_________parser_________//
+
+    /**
+     * sum := product (('+' | '-') product)*
+     */
+    private Node parseSum() {
+        Node first = parseProduct();
+        if (token != PLUS && token != MINUS)
+            return first;
+
+        List<Node> terms = new ArrayList<>();
+        terms.add(first);
+        while (token == PLUS || token == MINUS) {
+            boolean subtract = token == MINUS;
+            next();
+            Node term = parseProduct();
+            terms.add(subtract ? negate(term) : term);
+        }
+        return balanced(Operator.ADD, terms, 0, terms.size());
+    }
+
+    /**
+     * product := unary (('*' | '/') unary)*
+     */
+    private Node parseProduct() {
+        Node first = parseUnary();
+        if (token != TIMES && token != DIVIDE)
+            return first;
+
+        //only multiplications can be rearranged into a balanced tree
+        List<Node> factors = new ArrayList<>();
+        factors.add(first);
+        Node n = null;
+        while (token == TIMES || token == DIVIDE) {
+            if (token == TIMES) {
+                next();
+                factors.add(parseUnary());
+            } else {
+                next();
+                Node divisor = parseUnary();
+                n = new Node(Operator.DIVIDE, n == null ? balanced(Operator.MULTIPLY, factors, 0, factors.size())
+                        : multiply(n, factors), divisor);
+                factors.clear();
+            }
+        }
+        if (n == null)
+            return balanced(Operator.MULTIPLY, factors, 0, factors.size());
+        return factors.isEmpty() ? n : multiply(n, factors);
+    }
+
+    /**
+     * unary := ('-' | '+') unary | implicit
+     */
+    private Node parseUnary() {
+        if (token == MINUS) {
+            next();
+            return negate(parseUnary());
+        }
+        if (token == PLUS) {
+            next();
+            return parseUnary();
+        }
+        return parseImplicit();
+    }
+
+    /**
+     * implicit := power power*
+     * <p>
+     * Values written next to each other are multiplied
+     */
+    private Node parseImplicit() {
+        Node first = parsePower();
+        if (!startsValue())
+            return first;
+
+        List<Node> factors = new ArrayList<>();
+        factors.add(first);
+        while (startsValue())
+            factors.add(parsePower());
+        return balanced(Operator.MULTIPLY, factors, 0, factors.size());
+    }
+
+    /**
+     * power := value ('^' exponent)?
+     * exponent := '-' exponent | power
+     */
+    private Node parsePower() {
+        Node base = parseValue();
+        if (token != POWER)
+            return base;
+        next();
+
+        return new Node(Operator.POWER, base, parseExponent());
+    }
+
+    private Node parseExponent() {
+        if (token == MINUS) {
+            next();
+            return negate(parseExponent());
+        }
+        return parsePower();
+    }
+
+    /**
+     * value := number | variable | '(' sum ')' | function argument
+     * argument := '-' argument | value
+     */
+    private Node parseValue() {
+        switch (token) {
+            case NUMBER: {
+                Node n = new Node(number);
+                next();
+                return n;
+            }
+            case VARIABLE: {
+                Node n = new Node(slot, variables[slot]);
+                next();
+                return n;
+            }
+            case LEFT: {
+                next();
+                Node n = parseSum();
+                if (token != RIGHT)
+                    throw new InvalidEquationException("Missing ')' at index " + tokenStart
+                            + " in <" + abbreviate(equation) + ">");
+                next();
+                return n;
+            }
+            case FUNCTION: {
+                EdgeType type = function;
+                next();
+                return applyFunction(type, parseArgument());
+            }
+            default:
+                throw unexpected();
+        }
+    }
+
+    private Node parseArgument() {
+        if (token == MINUS) {
+            next();
+            return negate(parseArgument());
+        }
+        return parseValue();
+    }
+
+    /**
+     * @return true if the current token can begin a value, for implicit multiplication
+     */
+    private boolean startsValue() {
+        return token == NUMBER || token == VARIABLE || token == FUNCTION || token == LEFT;
+    }
+
+
+    //_________tree helpers_________//
+
+    /**
+     * Applies a function to a node. Nodes that already have a function are
+     * wrapped in a new node, {@code node + 0}, which holds the outer function
+     */
+    private static Node applyFunction(EdgeType type, Node node) {
+        if (node.type == EdgeType.DEFAULT)
+            return new Node(node, type);
+        return new Node(Operator.ADD, type, node, new Node(0.0d));
+    }
+
+    private static Node negate(Node node) {
+        if (node.isConstant())
+            return new Node(-node.constant);
+
+        return new Node(Operator.MULTIPLY, new Node(-1.0d), node);
+    }
+
+    private static Node multiply(Node n, List<Node> factors) {
+        for (Node factor : factors)
+            n = new Node(Operator.MULTIPLY, n, factor);
+        return n;
+    }
+
+    /**
+     * Builds a balanced tree of the operator over nodes[from, to)
+     */
+    private static Node balanced(Operator operator, List<Node> nodes, int from, int to) {
+        if (to - from == 1)
+            return nodes.get(from);
+
+        int middle = (from + to) >>> 1;
+        return new Node(operator, balanced(operator, nodes, from, middle), balanced(operator, nodes, middle, to));
+    }
+
+
+    //_________tokenizer_________//
+
+    /**
+     * Reads the next token from the String
+     *
+     * @throws InvalidEquationException on a character or name that is not recognized
+     */
+    private void next() {
+        while (position < equation.length() && Character.isWhitespace(equation.charAt(position)))
+            position++;
+
+        tokenStart = position;
+        if (position >= equation.length()) {
+            token = END;
+            return;
+        }
+
+        char c = equation.charAt(position);
+        switch (c) {
+            case '+': token = PLUS; position++; return;
+            case '-': token = MINUS; position++; return;
+            case '*': token = TIMES; position++; return;
+            case '/': token = DIVIDE; position++; return;
+            case '^': token = POWER; position++; return;
+            case '(': token = LEFT; position++; return;
+            case ')': token = RIGHT; position++; return;
+        }
+
+        if (Util.isNumerical(c)) {
+            int end = position;
+            while (end < equation.length() && Util.isNumerical(equation.charAt(end)))
+                end++;
+            try {
+                number = Double.parseDouble(equation.substring(position, end));
+            } catch (NumberFormatException e) {
+                throw new InvalidEquationException("Invalid number <" + equation.substring(position, end) + ">");
+            }
+            position = end;
+            token = NUMBER;
+            return;
+        }
+
+        if (Character.isLetter(c)) {
+            readName();
+            return;
+        }
+
+        throw new InvalidEquationException("Invalid character '" + c + "' at index " + position
+                + " in <" + abbreviate(equation) + ">");
+    }
+
+    /**
+     * Reads the longest recognized name at the current position, so "sinx" is read as "sin" then "x"
+     */
+    private void readName() {
+        int best = -1;
+        int bestLength = 0;
+        for (int i = 0; i < NAMES.length; i++) {
+            String name = NAMES[i];
+            if (name.length() > bestLength && equation.regionMatches(true, position, name, 0, name.length())) {
+                best = i;
+                bestLength = name.length();
+            }
+        }
+        int variable = -1;
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i];
+            if (name.length() > bestLength && equation.regionMatches(true, position, name, 0, name.length())) {
+                variable = i;
+                bestLength = name.length();
+            }
+        }
+
+        if (variable != -1) {
+            position += bestLength;
+            token = VARIABLE;
+            slot = variable;
+            return;
+        }
+        if (best == -1) {
+            int end = position;
+            while (end < equation.length() && Character.isLetter(equation.charAt(end)))
+                end++;
+            throw new InvalidEquationException("Invalid token <" + equation.substring(position, end) + ">");
+        }
+
+        position += bestLength;
+        String name = NAMES[best];
+        if (NAME_TYPES[best] != EdgeType.DEFAULT) {
+            token = FUNCTION;
+            function = NAME_TYPES[best];
+        } else {
+            token = NUMBER;
+            number = name.equals("pi") ? Math.PI : Math.E;
+        }
+    }
+
+    private InvalidEquationException unexpected() {
+        if (token == END)
+            return new InvalidEquationException("Unexpected end of equation <" + abbreviate(equation) + ">");
+        return new InvalidEquationException("Unexpected '" + equation.substring(tokenStart, position)
+                + "' at index " + tokenStart + " in <" + abbreviate(equation) + ">");
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() <= 100 ? s : s.substring(0, 97) + "...";
+    }
+
+}
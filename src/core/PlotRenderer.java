@@ -0,0 +1,151 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PlotRenderer Class
+ * <p>
+ *     Draws axes and equations into an off-screen image without any window, for servers
+ *     with no display, and writes it as a PNG. Equations are sampled adaptively, as in {@link Graph}:
+ *     more samples are taken where a curve bends, and curves are broken at poles and jumps. The
+ *     number of evaluations per render is capped, and shared equally between the equations.
+ * </p>
+ * <p>
+ *     A PlotRenderer can be shared between threads and render on all of them at once. Each thread
+ *     keeps its own image, curve sampler and PNG encoder, which are reused by every render on that
+ *     thread, so a render allocates almost nothing. Each render is sampled on the calling thread,
+ *     throughput comes from running renders concurrently.
+ * </p>
+ *
+ * @see core.Viewport
+ * @see core.Graph
+ */
+public final class PlotRenderer {
+
+    static final int AXES_COLOR = 0x05397a;
+    static final int CURVE_COLOR = 0x000000;
+    static final int BACKGROUND_COLOR = 0xffffff;
+
+    //_________Fields_________//
+    private final int width, height, maxEvaluations;
+    private final ThreadLocal<Frame> frames;
+
+    /**
+     * Creates a renderer of images of the given size, using up to 8 evaluations per column in a render
+     *
+     * @param width width of the images in pixels
+     * @param height height of the images in pixels
+     * @throws IllegalArgumentException if a dimension is not positive or the image would be too large
+     */
+    public PlotRenderer(int width, int height) {
+        this(width, height, (int) Math.min(Integer.MAX_VALUE, (long) CurveSampler.DEFAULT_EVALUATIONS_PER_COLUMN * width));
+    }
+
+    /**
+     * Creates a renderer of images of the given size
+     *
+     * @param width width of the images in pixels
+     * @param height height of the images in pixels
+     * @param maxEvaluations largest number of evaluations of the equations in a render
+     * @throws IllegalArgumentException if a dimension or maxEvaluations is not positive or the image would be too large
+     */
+    public PlotRenderer(int width, int height, int maxEvaluations) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        if (maxEvaluations <= 0)
+            throw new IllegalArgumentException("Invalid evaluation limit " + maxEvaluations);
+        this.width = width;
+        this.height = height;
+        this.maxEvaluations = maxEvaluations;
+        frames = ThreadLocal.withInitial(Frame::new);
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Draws the axes and the equations and writes the image to out as a PNG.
+     * The stream is flushed but not closed
+     *
+     * @param viewport part of the plane shown by the image
+     * @param equations equations to be drawn
+     * @param out stream the PNG is written to
+     * @throws IOException if writing to out failed
+     */
+    public void renderPng(Viewport viewport, List<? extends Node> equations, OutputStream out) throws IOException {
+        Frame frame = frames.get();
+        frame.draw(viewport, equations);
+
+        frame.encoder.encode(frame.pixels, width, height, out);
+        out.flush();
+    }
+
+    /**
+     * Draws the axes and the equations into a new image
+     *
+     * @param viewport part of the plane shown by the image
+     * @param equations equations to be drawn
+     * @return image owned by the caller
+     */
+    public BufferedImage render(Viewport viewport, List<? extends Node> equations) {
+        Frame frame = frames.get();
+        frame.draw(viewport, equations);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(frame.pixels, 0, pixels, 0, pixels.length);
+        return image;
+    }
+
+    /**
+     * @return width of the images in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the images in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return largest number of evaluations of the equations in a render
+     */
+    public int getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Image and buffers of one thread
+     */
+    private final class Frame {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final CurveSampler sampler = new CurveSampler();
+        final PngEncoder encoder = new PngEncoder();
+
+        void draw(Viewport viewport, List<? extends Node> equations) {
+            Arrays.fill(pixels, BACKGROUND_COLOR);
+            Rasterizer.drawAxes(pixels, width, height, viewport.getColumn(0.0d, width),
+                    viewport.getRow(0.0d, height), AXES_COLOR);
+
+            for (Node equation : equations) {
+                sampler.sample(equation.compiled(), false, viewport, width, height,
+                        0.0d, width - 1, maxEvaluations / equations.size());
+                sampler.draw(pixels, CURVE_COLOR);
+            }
+        }
+    }
+
+}
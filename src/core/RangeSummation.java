@@ -0,0 +1,231 @@
+package core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * RangeSummation Class
+ * <p>
+ *     Calculates finite sums of an equation over ranges of up to {@code Long.MAX_VALUE} terms.
+ *     The range is split into chunks of {@code chunkSize} terms that are summed on a
+ *     {@link ForkJoinPool} of {@code parallelism} threads, shared with every other RangeSummation of
+ *     the same parallelism. Each chunk calculates its terms with the batch evaluator and adds them
+ *     with Neumaier's compensated summation, and chunks are combined
+ *     in a fixed pairwise order, carrying their compensation, so the result is identical,
+ *     bit for bit, for every number of threads. It only depends on the chunk size.
+ * </p>
+ * <p>
+ *     Terms are calculated at {@code (double) x}, so above 2^53 neighbouring values of x may be rounded
+ *     to the same double. A RangeSummation does not change after construction and can be shared between threads.
+ * </p>
+ *
+ * @see core.Node#sum(long, long)
+ */
+public final class RangeSummation {
+
+    private static final RangeSummation DEFAULT =
+            new RangeSummation(ForkJoinPool.getCommonPoolParallelism(), 1 << 16);
+
+    //_________Fields_________//
+    private final int parallelism;
+    private final int chunkSize;
+    //null when chunks are summed on the calling thread
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a summation
+     *
+     * @param parallelism number of threads, 1 sums every chunk on the calling thread
+     * @param chunkSize number of terms summed by one task, the granularity of the parallel work
+     * @throws IllegalArgumentException if parallelism or chunkSize is not positive
+     */
+    public RangeSummation(int parallelism, int chunkSize) {
+        if (parallelism <= 0 || chunkSize <= 0)
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        pool = parallelism == 1 ? null : SharedPools.get(parallelism);
+    }
+
+    /**
+     * @return summation used by {@link Node#sum(long, long)}, running on the common pool
+     *         in chunks of 65536 terms
+     */
+    public static RangeSummation getDefault() {
+        return DEFAULT;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Calculates the sum of the equation from n to endN
+     *
+     * @param equation compiled equation giving the terms
+     * @param n first value of x
+     * @param endN last value of x, inclusive
+     * @return sum of the calculated values, 0 if endN is below n
+     */
+    public double sum(CompiledEquation equation, long n, long endN) {
+        return sum(equation, n, endN, null, null);
+    }
+
+    /**
+     * Calculates the sum of the equation from n to endN, reporting progress and checking for
+     * cancellation after every chunk
+     *
+     * @param equation compiled equation giving the terms
+     * @param n first value of x
+     * @param endN last value of x, inclusive
+     * @param progress called with the total number of terms summed so far after every chunk,
+     *                 from the threads summing the chunks, may be null
+     * @param cancelled checked before every chunk, the sum stops once it returns true, may be null
+     * @return sum of the calculated values, 0 if endN is below n
+     * @throws CancellationException if cancelled returned true before every chunk was summed
+     * @throws IllegalArgumentException if the range holds more than Long.MAX_VALUE terms
+     */
+    public double sum(CompiledEquation equation, long n, long endN,
+                      LongConsumer progress, BooleanSupplier cancelled) throws CancellationException {
+        if (endN < n)
+            return 0.0d;
+        long count = endN - n + 1;
+        if (count <= 0)
+            throw new IllegalArgumentException("Range holds more than Long.MAX_VALUE terms");
+
+        SumEvent event = new SumEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long chunks = (count - 1) / chunkSize + 1;
+        Chunks task = new Chunks(new Job(equation, n, endN, progress, cancelled), 0, chunks);
+        double[] result = pool == null ? task.compute() : pool.invoke(task);
+        CalculatorMetrics.getDefault().summed(count, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.method = "RANGE";
+            event.start = n;
+            event.instructions = equation.code().length;
+            event.terms = count;
+            event.commit();
+        }
+        return result[0] + result[1];
+    }
+
+    /**
+     * @return number of threads summing chunks
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of terms summed by one task
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Arguments shared by every chunk of one sum
+     */
+    private static final class Job {
+        final CompiledEquation equation;
+        final long n, endN;
+        final LongConsumer progress;
+        final BooleanSupplier cancelled;
+        final AtomicLong done = new AtomicLong();
+
+        Job(CompiledEquation equation, long n, long endN, LongConsumer progress, BooleanSupplier cancelled) {
+            this.equation = equation;
+            this.n = n;
+            this.endN = endN;
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+    }
+
+    /**
+     * Sums chunks [from, to), splitting the range in half until one chunk is left.
+     * Returns the sum and its compensation
+     */
+    @SuppressWarnings("serial")
+    private final class Chunks extends RecursiveTask<double[]> {
+        private final Job job;
+        private final long from, to;
+
+        Chunks(Job job, long from, long to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from == 1)
+                return chunk();
+
+            long middle = (from + to) >>> 1;
+            Chunks left = new Chunks(job, from, middle);
+            Chunks right = new Chunks(job, middle, to);
+            double[] l, r;
+            if (pool == null) {
+                l = left.compute();
+                r = right.compute();
+            } else {
+                left.fork();
+                r = right.compute();
+                l = left.join();
+            }
+
+            //two sum of the partial sums, the rounding error joins the compensation
+            double sum = l[0] + r[0];
+            double b = sum - l[0];
+            double error = (l[0] - (sum - b)) + (r[0] - b);
+            l[0] = sum;
+            l[1] += r[1] + error;
+            return l;
+        }
+
+        private double[] chunk() {
+            if (job.cancelled != null && job.cancelled.getAsBoolean())
+                throw new CancellationException("Sum was cancelled");
+
+            long start = job.n + from * chunkSize;
+            long end = job.endN - start < chunkSize ? job.endN : start + (chunkSize - 1);
+            double[] xs = new double[(int) Math.min(CompiledEquation.BLOCK, end - start + 1)];
+            double[] ys = new double[xs.length];
+            double sum = 0.0d, compensation = 0.0d;
+
+            for (long x = start; x <= end; ) {
+                int length = (int) Math.min(xs.length, end - x + 1);
+                for (int i = 0; i < length; i++)
+                    xs[i] = x + i;
+                job.equation.calculate(xs, 0, ys, 0, length);
+                for (int i = 0; i < length; i++) {
+                    double v = ys[i];
+                    double t = sum + v;
+                    if (Math.abs(sum) >= Math.abs(v))
+                        compensation += (sum - t) + v;
+                    else
+                        compensation += (v - t) + sum;
+                    sum = t;
+                }
+                x += length;
+                //the last chunk may end at Long.MAX_VALUE
+                if (x <= start)
+                    break;
+            }
+
+            long done = job.done.addAndGet(end - start + 1);
+            if (job.progress != null)
+                job.progress.accept(done);
+            return new double[]{sum, compensation};
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Draws lines, curves and axes into an {@code int[]} pixel buffer
+ * <p>
+ *     Lines are clipped to the buffer, or to a rectangle of it, and drawn with Bresenham's algorithm.
+ *     Curves are drawn as lines joining the points of a {@link CurveSampler}.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Graph
+ */
+final class Rasterizer {
+
+    private Rasterizer() {
+    }
+
+    /**
+     * Draws the line from (x0, y0) to (x1, y1), clipped to the buffer
+     *
+     * @param pixels buffer of width * height pixels, row by row
+     * @param color rgb color
+     */
+    static void drawLine(int[] pixels, int width, int height,
+                         double x0, double y0, double x1, double y1, int color) {
+        drawLine(pixels, width, 0, 0, width - 1, height - 1, x0, y0, x1, y1, color);
+    }
+
+    /**
+     * Draws the line from (x0, y0) to (x1, y1), clipped to the rectangle of pixels from
+     * (left, top) to (right, bottom), which must be inside the buffer
+     *
+     * @param pixels buffer of pixels, row by row
+     * @param width width of the buffer
+     * @param color rgb color
+     */
+    static void drawLine(int[] pixels, int width, int left, int top, int right, int bottom,
+                         double x0, double y0, double x1, double y1, int color) {
+        //Liang-Barsky clipping against the outer edges of the rectangle, in doubles so far away
+        //points do not overflow
+        double t0 = 0.0d, t1 = 1.0d;
+        double dx = x1 - x0, dy = y1 - y0;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x0 - left + 0.5d, right + 0.5d - x0, y0 - top + 0.5d, bottom + 0.5d - y0};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0.0d) {
+                if (q[i] < 0.0d)
+                    return;
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0.0d) {
+                    if (t > t1)
+                        return;
+                    t0 = Math.max(t0, t);
+                } else {
+                    if (t < t0)
+                        return;
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+
+        int ax = clamp(Math.round(x0 + t0 * dx), left, right);
+        int ay = clamp(Math.round(y0 + t0 * dy), top, bottom);
+        int bx = clamp(Math.round(x0 + t1 * dx), left, right);
+        int by = clamp(Math.round(y0 + t1 * dy), top, bottom);
+
+        //Bresenham
+        int sx = ax < bx ? 1 : -1, sy = ay < by ? 1 : -1;
+        int ex = Math.abs(bx - ax), ey = -Math.abs(by - ay);
+        int error = ex + ey;
+        while (true) {
+            pixels[ay * width + ax] = color;
+            if (ax == bx && ay == by)
+                return;
+            int e2 = 2 * error;
+            if (e2 >= ey) {
+                error += ey;
+                ax += sx;
+            }
+            if (e2 <= ex) {
+                error += ex;
+                ay += sy;
+            }
+        }
+    }
+
+    /**
+     * Joins neighbouring points (columns[i] + dx, rows[i] + dy) by lines, clipped to the rectangle
+     * of pixels from (left, top) to (right, bottom). Points with a row that is not finite are not
+     * drawn and break the line, isolated points are drawn as a pixel
+     *
+     * @param pixels buffer of pixels, row by row
+     * @param width width of the buffer
+     * @param count number of points
+     * @param color rgb color
+     */
+    static void drawPolyline(int[] pixels, int width, int left, int top, int right, int bottom,
+                             double[] columns, double[] rows, int count, double dx, double dy, int color) {
+        for (int i = 0; i < count; i++) {
+            if (!Double.isFinite(rows[i]))
+                continue;
+            boolean previous = i > 0 && Double.isFinite(rows[i - 1]);
+            boolean next = i + 1 < count && Double.isFinite(rows[i + 1]);
+            if (next)
+                drawLine(pixels, width, left, top, right, bottom, columns[i] + dx, rows[i] + dy,
+                        columns[i + 1] + dx, rows[i + 1] + dy, color);
+            else if (!previous)
+                drawLine(pixels, width, left, top, right, bottom, columns[i] + dx, rows[i] + dy,
+                        columns[i] + dx, rows[i] + dy, color);
+        }
+    }
+
+    /**
+     * Draws a full column and a full row through the origin, each only if it is inside the buffer
+     *
+     * @param pixels buffer of width * height pixels, row by row
+     * @param column column of x = 0
+     * @param row row of y = 0
+     * @param color rgb color
+     */
+    static void drawAxes(int[] pixels, int width, int height, double column, double row, int color) {
+        long x = Math.round(column), y = Math.round(row);
+        if (x >= 0 && x < width)
+            for (int i = (int) x; i < pixels.length; i += width)
+                pixels[i] = color;
+        if (y >= 0 && y < height)
+            Arrays.fill(pixels, (int) y * width, (int) y * width + width, color);
+    }
+
+    private static int clamp(long v, int min, int max) {
+        return (int) Math.max(min, Math.min(max, v));
+    }
+
+}
@@ -0,0 +1,421 @@
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RootFinder Class
+ * <p>
+ *     Finds every root of an equation in a range. The range is divided in halves, and a part is
+ *     dropped as soon as interval arithmetic shows that the equation cannot be 0 anywhere in it, so
+ *     most of a wide range costs a few bound calculations. Where the bounds of the analytic
+ *     derivative from {@link Node#calculateDerivative()} exclude 0, the equation is monotonic and
+ *     a sign change holds exactly one root, which is refined with Newton steps using the exact slope,
+ *     falling back to bisection whenever a step leaves the bracket or does not shrink it fast enough.
+ * </p>
+ * <p>
+ *     Tangent roots, such as x = 1 of {@code (x-1)^2}, do not change sign. They are found where a part
+ *     narrower than the tolerance still has finite bounds holding 0, and reported at its center.
+ *     Near a multiple root the calculated equation is 0 to within rounding over a small range and
+ *     can change sign several times, so neighbouring roots are joined into one, at the center of the
+ *     range, when the equation at the point halfway between them is within its rounding error of 0.
+ *     Sign changes at poles and jumps, such as x = 0 of {@code 1/x}, are not roots: refining them
+ *     makes the equation larger instead of smaller. Without a derivative, for example when it would
+ *     be too large to calculate, parts are divided until they are narrower than the tolerance.
+ * </p>
+ * <p>
+ *     The range is split into {@code pieces} equal parts searched on a {@link ForkJoinPool} of
+ *     {@code parallelism} threads, shared with every other RootFinder of the same parallelism,
+ *     each with an equal share of the evaluation budget. Roots are joined in order, so the result
+ *     only depends on the number of pieces, not on the number of threads.
+ *     A RootFinder does not change after construction and can be shared between threads.
+ * </p>
+ *
+ * @see core.RootResult
+ * @see core.Node#findRoots(double, double, double)
+ */
+public final class RootFinder {
+
+    private static final RootFinder DEFAULT = new RootFinder(1 << 22, ForkJoinPool.getCommonPoolParallelism(), 64);
+
+    //largest derivative tree, counting shared subtrees once for each place they appear, that is compiled
+    private static final long MAX_DERIVATIVE_NODES = 1 << 16;
+    private static final int MAX_ITERATIONS = 128;
+
+    //_________Fields_________//
+    private final long maxEvaluations;
+    private final int parallelism;
+    private final int pieces;
+    //null when pieces are searched on the calling thread
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a root finder that searches the whole range on the calling thread
+     *
+     * @param maxEvaluations largest number of point and bound calculations for one search
+     * @throws IllegalArgumentException if maxEvaluations is below 16
+     */
+    public RootFinder(long maxEvaluations) {
+        this(maxEvaluations, 1, 1);
+    }
+
+    /**
+     * Creates a root finder that splits each range into equal pieces searched in parallel
+     *
+     * @param maxEvaluations largest number of point and bound calculations for one search,
+     *                       at least 16 for each piece
+     * @param parallelism number of threads, 1 searches every piece on the calling thread
+     * @param pieces number of equal parts the range is split into, the granularity of the parallel work
+     * @throws IllegalArgumentException if parallelism or pieces is not positive, or maxEvaluations
+     *         is below 16 for each piece
+     */
+    public RootFinder(long maxEvaluations, int parallelism, int pieces) {
+        if (parallelism <= 0 || pieces <= 0)
+            throw new IllegalArgumentException("Parallelism and pieces must be positive");
+        if (maxEvaluations / pieces < 16)
+            throw new IllegalArgumentException("At least 16 evaluations are needed for each piece: " + maxEvaluations);
+        this.maxEvaluations = maxEvaluations;
+        this.parallelism = parallelism;
+        this.pieces = pieces;
+        pool = parallelism == 1 || pieces == 1 ? null : SharedPools.get(parallelism);
+    }
+
+    /**
+     * @return root finder used by {@link Node#findRoots(double, double, double)}, running on the
+     *         common pool in 64 pieces with at most 2^22 calculations
+     */
+    public static RootFinder getDefault() {
+        return DEFAULT;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * Finds the roots of the equation from a to b
+     *
+     * @param equation equation whose roots are found
+     * @param a one end of the range
+     * @param b other end of the range
+     * @param tolerance largest distance between a root found and the exact root
+     * @return roots in increasing order, more than the tolerance apart, and the number of calculations used
+     * @throws IllegalArgumentException if a or b is not finite or the tolerance is not positive
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    public RootResult findRoots(Node equation, double a, double b, double tolerance) {
+        if (!Double.isFinite(a) || !Double.isFinite(b))
+            throw new IllegalArgumentException("Invalid range " + a + " to " + b);
+        if (!(tolerance > 0.0d))
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        CompiledEquation compiled = equation.compiled();
+        compiled.requireSingleVariable();
+        CompiledEquation derivative = derivative(equation);
+        double lower = Math.min(a, b), upper = Math.max(a, b);
+
+        Search[] searches = new Search[pieces];
+        for (int i = 0; i < pieces; i++) {
+            double start = i == 0 ? lower : lower + (upper - lower) * i / pieces;
+            double end = i == pieces - 1 ? upper : lower + (upper - lower) * (i + 1) / pieces;
+            searches[i] = new Search(compiled, derivative, start, end, tolerance, maxEvaluations / pieces);
+        }
+        Pieces task = new Pieces(searches, 0, pieces);
+        if (pool == null)
+            task.compute();
+        else
+            pool.invoke(task);
+
+        double[] roots = new double[0];
+        int count = 0;
+        long evaluations = 0, bounds = 0;
+        boolean complete = true;
+        //first and last root joined into the last root
+        double first = Double.NaN, last = Double.NaN;
+        for (Search s : searches) {
+            evaluations += s.evaluations;
+            bounds += s.bounds;
+            complete &= s.complete;
+            for (int i = 0; i < s.count; i++) {
+                double root = s.roots[i];
+                if (count > 0) {
+                    //the same root found in neighbouring parts, or 0 to within rounding in between
+                    boolean same = root - last <= tolerance;
+                    if (!same) {
+                        double middle = 0.5d * (last + root);
+                        bounds++;
+                        Interval between = compiled.calculateBounds(middle, middle);
+                        //widened by its own width, the rounding error of the point
+                        double error = between.getUpper() - between.getLower();
+                        same = Double.isFinite(error) && between.getLower() - error <= 0.0d
+                                && between.getUpper() + error >= 0.0d;
+                    }
+                    if (same) {
+                        last = root;
+                        roots[count - 1] = 0.5d * (first + last);
+                        continue;
+                    }
+                }
+                if (count == roots.length)
+                    roots = Arrays.copyOf(roots, Math.max(8, 2 * count));
+                roots[count++] = root;
+                first = root;
+                last = root;
+            }
+        }
+        return new RootResult(Arrays.copyOf(roots, count), evaluations, bounds, complete);
+    }
+
+    /**
+     * @return largest number of point and bound calculations for one search
+     */
+    public long getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+    /**
+     * @return number of threads searching pieces
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of equal parts each range is split into
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * @return compiled analytic derivative of the equation, or null if it cannot be calculated or is too large
+     */
+    private static CompiledEquation derivative(Node equation) {
+        try {
+            Node derivative = equation.calculateDerivative();
+            if (derivative == null || derivative.toDag().getTreeNodeCount() > MAX_DERIVATIVE_NODES)
+                return null;
+            return derivative.compile();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Searches pieces [from, to), splitting the range in half until one piece is left
+     */
+    @SuppressWarnings("serial")
+    private final class Pieces extends RecursiveAction {
+        private final Search[] searches;
+        private final int from, to;
+
+        Pieces(Search[] searches, int from, int to) {
+            this.searches = searches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                searches[from].run();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            Pieces left = new Pieces(searches, from, middle);
+            Pieces right = new Pieces(searches, middle, to);
+            if (pool == null) {
+                left.compute();
+                right.compute();
+            } else {
+                left.fork();
+                right.compute();
+                left.join();
+            }
+        }
+    }
+
+    /**
+     * Search of one piece, holding the roots found in increasing order and the calculations used
+     */
+    private static final class Search {
+        final CompiledEquation equation, derivative;
+        final double start, end, tolerance;
+        final long budget;
+        final double[] dual = new double[2];
+
+        double[] roots = new double[8];
+        int count;
+        long evaluations, bounds;
+        boolean complete = true;
+
+        Search(CompiledEquation equation, CompiledEquation derivative, double start, double end,
+               double tolerance, long budget) {
+            this.equation = equation;
+            this.derivative = derivative;
+            this.start = start;
+            this.end = end;
+            this.tolerance = tolerance;
+            this.budget = budget;
+        }
+
+        void run() {
+            double fa = equation.calculate(start), fb = equation.calculate(end);
+            evaluations += 2;
+            bounds += 2;
+            boolean za = zero(start), zb = zero(end);
+            if (fa == 0.0d)
+                add(start);
+            search(start, end, fa, fb, za, zb);
+            if (fb == 0.0d)
+                add(end);
+        }
+
+        /**
+         * Finds the roots strictly between a and b, given the values at a and b and whether they are 0
+         * to within rounding
+         */
+        private void search(double a, double b, double fa, double fb, boolean za, boolean zb) {
+            if (evaluations + bounds + 5 > budget) {
+                complete = false;
+                return;
+            }
+            bounds++;
+            Interval range = equation.calculateBounds(a, b);
+            if (!range.contains(0.0d))
+                return;
+
+            boolean change = (fa < 0.0d && fb > 0.0d) || (fa > 0.0d && fb < 0.0d);
+            //largest absolute slope, infinite if unknown
+            double steepest = Double.POSITIVE_INFINITY;
+            if (derivative != null) {
+                bounds++;
+                Interval slope = derivative.calculateBounds(a, b);
+                if (!slope.isEmpty() && !slope.contains(0.0d)) {
+                    //monotonic, a sign change holds the only root
+                    if (change)
+                        refine(a, b, fa, fb);
+                    return;
+                }
+                if (!slope.isEmpty())
+                    steepest = Math.max(-slope.getLower(), slope.getUpper());
+            }
+
+            double m = 0.5d * (a + b);
+            boolean narrow = b - a <= tolerance || !(m > a && m < b);
+            if (narrow && change) {
+                refine(a, b, fa, fb);
+                return;
+            }
+            bounds++;
+            Interval middle = equation.calculateBounds(m, m);
+            boolean zm = middle.contains(0.0d);
+            //mean value form, f over [a, b] is within f(m) + f'([a, b]) * [a - m, b - m]
+            double reach = Math.nextUp(steepest * Math.nextUp(Math.max(m - a, b - m)));
+            if (Math.nextDown(middle.getLower() - reach) > 0.0d || Math.nextUp(middle.getUpper() + reach) < 0.0d)
+                return;
+            if (narrow) {
+                //tangent root
+                if (Double.isFinite(range.getLower()) && Double.isFinite(range.getUpper()))
+                    add(m);
+                return;
+            }
+            if (za && zm && zb) {
+                //0 to within rounding across the part, as around a multiple root
+                add(m);
+                return;
+            }
+            double fm = equation.calculate(m);
+            evaluations++;
+
+            search(a, m, fa, fm, za, zm);
+            if (fm == 0.0d)
+                add(m);
+            search(m, b, fm, fb, zm, zb);
+        }
+
+        /**
+         * @return true if the equation is 0 to within rounding at x
+         */
+        private boolean zero(double x) {
+            return equation.calculateBounds(x, x).contains(0.0d);
+        }
+
+        /**
+         * Refines the root bracketed by a sign change between a and b with safeguarded Newton steps,
+         * and adds it unless the equation grew while refining, at a pole or a jump
+         */
+        private void refine(double a, double b, double fa, double fb) {
+            double limit = Math.min(Math.abs(fa), Math.abs(fb));
+            double x = 0.5d * (a + b);
+            double step = b - a, lastStep = step;
+
+            for (int i = 0; i < MAX_ITERATIONS; i++) {
+                equation.calculateDual(x, dual);
+                evaluations++;
+                double f = dual[0], slope = dual[1];
+                if (f == 0.0d) {
+                    accept(x, a, b);
+                    return;
+                }
+                if ((f < 0.0d) == (fa < 0.0d))
+                    a = x;
+                else
+                    b = x;
+
+                double newton = x - f / slope;
+                //bisect when Newton leaves the bracket or would not halve the step before last
+                if (!(newton > a && newton < b) || Math.abs(2.0d * f) > Math.abs(lastStep * slope)) {
+                    lastStep = step;
+                    step = 0.5d * (b - a);
+                    x = a + step;
+                } else {
+                    lastStep = step;
+                    step = x - newton;
+                    x = newton;
+                }
+
+                if (Math.abs(step) <= 0.5d * tolerance || b - a <= tolerance || !(x > a && x < b)) {
+                    if (!(x > a && x < b))
+                        x = 0.5d * (a + b);
+                    if (Math.abs(f) < limit)
+                        accept(x, a, b);
+                    return;
+                }
+            }
+            accept(x, a, b);
+        }
+
+        /**
+         * Adds the refined root x, bracketed by a and b, if the equation is 0 to within rounding at x,
+         * or adds a or b if it is 0 there, or adds x if the bounds show that it changes sign between
+         * a and b. Rounding makes the calculated values change sign around a multiple root where the
+         * equation is not 0, such sign changes are dropped.
+         */
+        private void accept(double x, double a, double b) {
+            bounds++;
+            if (zero(x)) {
+                add(x);
+                return;
+            }
+            bounds += 2;
+            Interval left = equation.calculateBounds(a, a), right = equation.calculateBounds(b, b);
+            //a Newton step can land on an end of the bracket
+            if (left.contains(0.0d))
+                add(a);
+            else if (right.contains(0.0d))
+                add(b);
+            else if ((left.getUpper() < 0.0d && right.getLower() > 0.0d) || (left.getLower() > 0.0d && right.getUpper() < 0.0d))
+                add(x);
+        }
+
+        private void add(double root) {
+            if (count == roots.length)
+                roots = Arrays.copyOf(roots, 2 * count);
+            roots[count++] = root;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * RootResult Class
+ * <p>
+ *     Result of a root search by a {@link RootFinder}: the roots in increasing order, the number
+ *     of times the equation was calculated at a point and over a range, and whether the whole
+ *     range was searched.
+ * </p>
+ *
+ * @see core.RootFinder
+ * @see core.Node#findRoots(double, double, double)
+ */
+public final class RootResult {
+
+    //_________Fields_________//
+    private final double[] roots;
+    private final long evaluations;
+    private final long boundEvaluations;
+    private final boolean complete;
+
+    RootResult(double[] roots, long evaluations, long boundEvaluations, boolean complete) {
+        this.roots = roots;
+        this.evaluations = evaluations;
+        this.boundEvaluations = boundEvaluations;
+        this.complete = complete;
+    }
+
+    /**
+     * @return roots found, in increasing order
+     */
+    public double[] getRoots() {
+        return roots.clone();
+    }
+
+    /**
+     * @return number of roots found
+     */
+    public int getCount() {
+        return roots.length;
+    }
+
+    /**
+     * @return number of values, or values and slopes, of the equation that were calculated
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return number of times the equation or its derivative was bounded over a range with interval arithmetic
+     */
+    public long getBoundEvaluations() {
+        return boundEvaluations;
+    }
+
+    /**
+     * @return true if the whole range was searched, false if the evaluation budget ran out first
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(roots) + " (" + evaluations + " evaluations, " + boundEvaluations + " bounds"
+                + (complete ? ")" : ", not complete)");
+    }
+
+}
@@ -0,0 +1,388 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Calculates infinite sums of an equation with convergence acceleration
+ * <p>
+ *     The first block of terms decides how the limit of the partial sums is estimated:
+ *     <ul>
+ *         <li>alternating terms use the Euler transform</li>
+ *         <li>terms of one sign that shrink geometrically use the Wynn epsilon algorithm</li>
+ *         <li>terms of one sign that shrink slowly, such as {@code 1/x^2}, use Richardson extrapolation
+ *             of the partial sums at 8, 16, 32, ... terms</li>
+ *         <li>anything else adds terms directly until one is smaller than the precision</li>
+ *     </ul>
+ *     Partial sums are added with Neumaier's compensated summation. Accelerated sums stop once two
+ *     estimates in a row change the value by at most the precision; the last change is reported as the
+ *     error estimate. Terms are calculated in batches with the compiled equation.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Node#sumSeries(int, double, int)
+ */
+final class SeriesAccelerator {
+
+    //fewest leading terms used to choose a method
+    private static final int CLASSIFY = 16;
+    //terms of one sign are geometric when 1 - a(x+1)/a(x) keeps at least this fraction of its value
+    //over the first block, it halves for terms like x^-q
+    private static final double GEOMETRIC_RATIO = 0.75d;
+    //largest width of the epsilon table, wider tables only add rounding error
+    private static final int EPSILON_COLUMNS = 40;
+    //number of terms in the first Richardson partial sum
+    private static final int RICHARDSON_START = 8;
+    //highest order of Richardson extrapolation
+    private static final int RICHARDSON_ORDER = 8;
+
+    private SeriesAccelerator() {
+    }
+
+    /**
+     * Calculates the sum of the equation at n, n + 1, n + 2, ...
+     *
+     * @param equation compiled equation giving the terms
+     * @param n first value of x
+     * @param precision largest acceptable change between the last estimates
+     * @param maxTerms largest number of terms to calculate
+     * @return value, error estimate, number of terms and method
+     */
+    static SeriesResult sum(CompiledEquation equation, int n, double precision, int maxTerms) {
+        if (!(precision >= 0.0d))
+            throw new IllegalArgumentException("Precision must not be negative: " + precision);
+        if (maxTerms <= 0)
+            throw new IllegalArgumentException("Maximum number of terms must be positive: " + maxTerms);
+
+        SumEvent event = new SumEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Terms terms = new Terms(equation, n, maxTerms);
+        SeriesResult result;
+        switch (classify(terms.block, terms.length)) {
+            case EULER:        result = euler(terms, precision, maxTerms); break;
+            case WYNN_EPSILON: result = epsilon(terms, precision, maxTerms); break;
+            case RICHARDSON:   result = richardson(terms, precision, maxTerms); break;
+            default:           result = direct(terms, precision, maxTerms); break;
+        }
+        CalculatorMetrics.getDefault().summed(result.getTerms(), System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.method = result.getMethod().name();
+            event.start = n;
+            event.instructions = equation.code().length;
+            event.terms = result.getTerms();
+            event.commit();
+        }
+        return result;
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * Chooses a method from the first block of terms. Terms of one sign whose ratio
+     * {@code a(x+1)/a(x)} stays the same shrink geometrically, terms whose ratio approaches 1
+     * shrink slowly
+     */
+    private static SeriesResult.Method classify(double[] first, int count) {
+        if (count < CLASSIFY)
+            return SeriesResult.Method.DIRECT;
+
+        boolean alternating = true, sameSign = true;
+        for (int i = 0; i < count; i++) {
+            if (first[i] == 0.0d || !Double.isFinite(first[i]))
+                return SeriesResult.Method.DIRECT;
+            if (i > 0) {
+                boolean flipped = (first[i] > 0.0d) != (first[i - 1] > 0.0d);
+                alternating &= flipped;
+                sameSign &= !flipped;
+            }
+        }
+        if (alternating)
+            return SeriesResult.Method.EULER;
+        if (!sameSign)
+            return SeriesResult.Method.WYNN_EPSILON;
+
+        double middle = 1.0d - first[count / 2] / first[count / 2 - 1];
+        double end = 1.0d - first[count - 1] / first[count - 2];
+        //growing terms do not converge, the direct sum stops at maxTerms
+        if (!(end > 0.0d))
+            return SeriesResult.Method.DIRECT;
+        return end / middle > GEOMETRIC_RATIO ? SeriesResult.Method.WYNN_EPSILON : SeriesResult.Method.RICHARDSON;
+    }
+
+    /**
+     * Adds terms until a term is smaller than the precision, or until a term is not finite
+     */
+    private static SeriesResult direct(Terms terms, double precision, int maxTerms) {
+        Sum sum = new Sum();
+        double term = Double.NaN;
+        while (terms.count < maxTerms && terms.finite) {
+            term = terms.next();
+            sum.add(term);
+            if (Math.abs(term) < precision && Double.isFinite(sum.value()))
+                return new SeriesResult(sum.value(), Math.abs(term), terms.evaluated, SeriesResult.Method.DIRECT, true);
+        }
+        double error = Double.isFinite(term) ? Math.abs(term) : Double.POSITIVE_INFINITY;
+        return new SeriesResult(sum.value(), error, terms.evaluated, SeriesResult.Method.DIRECT, false);
+    }
+
+    /**
+     * Euler transform with van Wijngaarden's ordering, the transformed terms are added directly
+     * for as long as they shrink faster than the differences.
+     * The transform also gives a value for alternating series that diverge, such as {@code (-1)^x},
+     * so the sum only converges while the terms are shrinking
+     */
+    private static SeriesResult euler(Terms terms, double precision, int maxTerms) {
+        double[] differences = new double[16];
+        int order = 1;
+        Sum sum = new Sum();
+
+        double term = terms.next();
+        differences[0] = term;
+        sum.add(0.5d * term);
+
+        Convergence convergence = new Convergence(precision);
+        convergence.add(sum.value());
+        //size of the term at the last power of two count of terms, later terms must be smaller
+        double checkpoint = Math.abs(term);
+        while (terms.count < maxTerms && terms.finite) {
+            term = terms.next();
+            boolean shrinking = Math.abs(term) < checkpoint;
+            if ((terms.count & (terms.count - 1)) == 0)
+                checkpoint = Math.abs(term);
+            if (order + 1 >= differences.length)
+                differences = Arrays.copyOf(differences, differences.length * 2);
+
+            //update the diagonal of averaged differences with the new term
+            double previous = differences[0];
+            differences[0] = term;
+            for (int j = 0; j < order - 1; j++) {
+                double next = differences[j + 1];
+                differences[j + 1] = 0.5d * (differences[j] + previous);
+                previous = next;
+            }
+            differences[order] = 0.5d * (differences[order - 1] + previous);
+            if (Math.abs(differences[order]) <= Math.abs(differences[order - 1])) {
+                sum.add(0.5d * differences[order]);
+                order++;
+            } else {
+                sum.add(differences[order]);
+            }
+
+            if (convergence.add(sum.value(), shrinking))
+                break;
+        }
+        return convergence.result(terms, SeriesResult.Method.EULER);
+    }
+
+    /**
+     * Wynn epsilon algorithm over the partial sums. Only the last antidiagonal of the table is kept,
+     * its even columns are the estimates
+     */
+    private static SeriesResult epsilon(Terms terms, double precision, int maxTerms) {
+        double[] diagonal = new double[EPSILON_COLUMNS];
+        double[] next = new double[EPSILON_COLUMNS];
+        int length = 0;
+        Sum sum = new Sum();
+        Convergence convergence = new Convergence(precision);
+
+        while (terms.count < maxTerms && terms.finite) {
+            sum.add(terms.next());
+            next[0] = sum.value();
+            int nextLength = 1;
+            for (int j = 0; j < length && j + 1 < EPSILON_COLUMNS; j++) {
+                double difference = next[j] - diagonal[j];
+                //equal neighbours mean the table has converged at this column
+                if (difference == 0.0d || !Double.isFinite(difference))
+                    break;
+                next[j + 1] = (j == 0 ? 0.0d : diagonal[j - 1]) + 1.0d / difference;
+                nextLength++;
+            }
+
+            double[] t = diagonal;
+            diagonal = next;
+            next = t;
+            length = nextLength;
+
+            double estimate = diagonal[(length - 1) & ~1];
+            if (convergence.add(estimate))
+                break;
+        }
+        return convergence.result(terms, SeriesResult.Method.WYNN_EPSILON);
+    }
+
+    /**
+     * Richardson extrapolation of partial sums at 8, 16, 32, ... terms. The tail of a series whose
+     * terms shrink like x^-q shrinks like N^-(q-1), the leading order is estimated from the
+     * last three partial sums and the extrapolation removes that order and the next ones
+     */
+    private static SeriesResult richardson(Terms terms, double precision, int maxTerms) {
+        double[] sums = new double[32];
+        int levels = 0;
+        Sum sum = new Sum();
+        Convergence convergence = new Convergence(precision);
+
+        for (long length = RICHARDSON_START; length <= maxTerms; length *= 2) {
+            while (terms.count < length && terms.finite)
+                sum.add(terms.next());
+            sums[levels++] = sum.value();
+            if (!terms.finite) {
+                convergence.add(sum.value());
+                break;
+            }
+            if (levels < 3)
+                continue;
+
+            double order = log2((sums[levels - 2] - sums[levels - 3]) / (sums[levels - 1] - sums[levels - 2]));
+            //partial sums that do not approach a limit cannot be extrapolated
+            if (!(order > 0.0d)) {
+                convergence.add(sums[levels - 1]);
+                continue;
+            }
+            //common series have integer or half integer orders
+            double rounded = Math.rint(order * 2.0d) / 2.0d;
+            if (Math.abs(order - rounded) < 0.05d)
+                order = rounded;
+
+            if (convergence.add(extrapolate(sums, levels, order)))
+                break;
+        }
+        return convergence.result(terms, SeriesResult.Method.RICHARDSON);
+    }
+
+    /**
+     * Neville's table for partial sums whose errors are a series in 1/N starting at 1/N^order,
+     * with N doubling between levels
+     */
+    private static double extrapolate(double[] sums, int levels, double order) {
+        int columns = Math.min(levels - 1, RICHARDSON_ORDER);
+        double[] row = Arrays.copyOfRange(sums, levels - 1 - columns, levels);
+        for (int k = 1; k <= columns; k++) {
+            double factor = Math.pow(2.0d, order + k - 1) - 1.0d;
+            for (int j = columns; j >= k; j--)
+                row[j] += (row[j] - row[j - 1]) / factor;
+        }
+        return row[columns];
+    }
+
+    private static double log2(double v) {
+        return Math.log(v) / Math.log(2.0d);
+    }
+
+    /**
+     * Tracks estimates and stops once two changes in a row are within the precision
+     */
+    private static final class Convergence {
+        private final double precision;
+        private double estimate = Double.NaN;
+        private double change = Double.POSITIVE_INFINITY;
+        private int estimates;
+        private boolean converged;
+
+        Convergence(double precision) {
+            this.precision = precision;
+        }
+
+        /**
+         * @return true if the estimates have converged
+         */
+        boolean add(double next) {
+            double nextChange = Math.abs(next - estimate);
+            converged = estimates >= 2 && nextChange <= precision && change <= precision;
+            estimate = next;
+            change = nextChange;
+            estimates++;
+            return converged;
+        }
+
+        /**
+         * Adds an estimate that can only converge if valid is true
+         *
+         * @return true if the estimates have converged
+         */
+        boolean add(double next, boolean valid) {
+            add(next);
+            converged &= valid;
+            return converged;
+        }
+
+        /**
+         * @return result of the last estimate, not converged if a term, the estimate or its error is not finite
+         */
+        SeriesResult result(Terms terms, SeriesResult.Method method) {
+            double error = Math.max(Double.isNaN(change) ? Double.POSITIVE_INFINITY : change,
+                    4.0d * Math.ulp(estimate));
+            if (Double.isNaN(error))
+                error = Double.POSITIVE_INFINITY;
+            boolean finite = terms.finite && Double.isFinite(estimate) && Double.isFinite(error);
+            return new SeriesResult(estimate, error, terms.evaluated, method, converged && finite);
+        }
+    }
+
+    /**
+     * Neumaier compensated sum
+     */
+    private static final class Sum {
+        private double sum, compensation;
+
+        void add(double v) {
+            double t = sum + v;
+            if (Math.abs(sum) >= Math.abs(v))
+                compensation += (sum - t) + v;
+            else
+                compensation += (v - t) + sum;
+            sum = t;
+        }
+
+        double value() {
+            return sum + compensation;
+        }
+    }
+
+    /**
+     * Terms of the series, calculated a block at a time, never more than the maximum number of terms
+     */
+    private static final class Terms {
+        private final CompiledEquation equation;
+        private final long maxTerms;
+        private final double[] xs = new double[CompiledEquation.BLOCK];
+        final double[] block = new double[CompiledEquation.BLOCK];
+        private double x;
+        private int index;
+        //number of terms in block
+        int length;
+        //number of terms returned by next
+        long count;
+        //number of terms calculated, at most maxTerms
+        long evaluated;
+        //false once next has returned a term that is not finite
+        boolean finite = true;
+
+        Terms(CompiledEquation equation, int n, long maxTerms) {
+            this.equation = equation;
+            this.maxTerms = maxTerms;
+            this.x = n;
+            fill();
+        }
+
+        double next() {
+            if (index == length)
+                fill();
+            double term = block[index++];
+            finite &= Double.isFinite(term);
+            count++;
+            return term;
+        }
+
+        private void fill() {
+            length = (int) Math.min(xs.length, maxTerms - evaluated);
+            for (int i = 0; i < length; i++)
+                xs[i] = x++;
+            equation.calculate(xs, 0, block, 0, length);
+            evaluated += length;
+            index = 0;
+        }
+    }
+
+}
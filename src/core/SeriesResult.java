@@ -0,0 +1,86 @@
+package core;
+
+/**
+ * SeriesResult Class
+ * <p>
+ *     Result of an infinite sum calculated by {@link Node#sumSeries(int, double)}: the value,
+ *     an estimate of its absolute error, the number of terms that were calculated and the
+ *     acceleration method that was used.
+ * </p>
+ *
+ * @see core.Node#sumSeries(int, double, int)
+ */
+public final class SeriesResult {
+
+    /**
+     * How the limit of the partial sums was estimated
+     */
+    public enum Method {
+        /** partial sums were added until a term was smaller than the precision */
+        DIRECT,
+        /** Euler transform, for alternating series */
+        EULER,
+        /** Wynn epsilon algorithm, for series whose terms shrink geometrically */
+        WYNN_EPSILON,
+        /** Richardson extrapolation of partial sums at doubling lengths, for slowly converging series */
+        RICHARDSON
+    }
+
+    //_________Fields_________//
+    private final double value;
+    private final double errorEstimate;
+    private final long terms;
+    private final Method method;
+    private final boolean converged;
+
+    SeriesResult(double value, double errorEstimate, long terms, Method method, boolean converged) {
+        this.value = value;
+        this.errorEstimate = errorEstimate;
+        this.terms = terms;
+        this.method = method;
+        this.converged = converged;
+    }
+
+    /**
+     * @return approximate value of the sum
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return estimated absolute error of the value
+     */
+    public double getErrorEstimate() {
+        return errorEstimate;
+    }
+
+    /**
+     * @return number of terms of the series that were calculated
+     */
+    public long getTerms() {
+        return terms;
+    }
+
+    /**
+     * @return method used to estimate the limit
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return true if the error estimate is within the requested precision, false if the
+     *         term limit was reached first or if a term, the value or the error is not finite
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return Util.format(value) + " +- " + String.format("%.1e", errorEstimate) + " (" + terms + " terms, "
+                + method + (converged ? ")" : ", not converged)");
+    }
+
+}
@@ -0,0 +1,34 @@
+package core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SharedPools Class
+ * <p>
+ *     Fork join pools shared by every {@link Integrator}, {@link RangeSummation} and
+ *     {@link RootFinder} of the same parallelism, so creating many of them does not start threads
+ *     that are never shut down. The common pool is used when its parallelism matches. Workers of a
+ *     fork join pool are daemon threads that end once they have been idle for a while, so the pools
+ *     are kept for the life of the JVM.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+final class SharedPools {
+
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private SharedPools() {
+    }
+
+    /**
+     * @param parallelism number of threads
+     * @return pool of parallelism threads, the same pool for every call with the same parallelism
+     */
+    static ForkJoinPool get(int parallelism) {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism())
+            return ForkJoinPool.commonPool();
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+}
@@ -0,0 +1,69 @@
+package core;
+
+/**
+ * SimplificationResult Class
+ * <p>
+ *     Result of {@link Node#simplifyAndReport()}: the simplified node, the number of nodes of the
+ *     tree before and after, and the number of passes over the tree. Nodes are counted once for each
+ *     place they appear in the tree, as they are calculated, even where subtrees are shared.
+ * </p>
+ *
+ * @see core.Node#simplify()
+ */
+public final class SimplificationResult {
+
+    //_________Fields_________//
+    private final Node node;
+    private final long nodesBefore;
+    private final long nodesAfter;
+    private final int passes;
+
+    SimplificationResult(Node node, long nodesBefore, long nodesAfter, int passes) {
+        this.node = node;
+        this.nodesBefore = nodesBefore;
+        this.nodesAfter = nodesAfter;
+        this.passes = passes;
+    }
+
+    /**
+     * @return simplified node
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * @return number of nodes before simplifying
+     */
+    public long getNodesBefore() {
+        return nodesBefore;
+    }
+
+    /**
+     * @return number of nodes after simplifying
+     */
+    public long getNodesAfter() {
+        return nodesAfter;
+    }
+
+    /**
+     * @return fraction of the nodes that were removed, 0 if none were
+     */
+    public double getReduction() {
+        return nodesBefore == 0 ? 0.0d : 1.0d - (double) nodesAfter / nodesBefore;
+    }
+
+    /**
+     * @return number of passes over the tree, the last one changed nothing unless the limit was reached
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    @Override
+    public String toString() {
+        return "SimplificationResult[nodes " + nodesBefore + " -> " + nodesAfter
+                + String.format(" (%.1f%% fewer)", 100.0d * getReduction()) + ", " + passes + " passes]";
+    }
+
+}
@@ -0,0 +1,422 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Simplifier Class
+ * <p>
+ *     Rewrites a tree into a smaller one with the same value, repeating passes over the whole tree
+ *     until one changes nothing. Each pass works from the leaves up:
+ * </p>
+ * <ul>
+ *     <li>subtrees without a variable are folded into one constant, functions of constants included,
+ *     unless the value is not finite, such as {@code ln(-1)}</li>
+ *     <li>chains of + and * are flattened, constants in them are combined, like terms are added,
+ *     {@code 2x + 3x} is {@code 5x}, and equal factors are multiplied, {@code x*x} is {@code x^2}</li>
+ *     <li>{@code f+0}, {@code f*1}, {@code f/1}, {@code f^1}, {@code f^0}, {@code 1^f}, {@code 0/f} and
+ *     {@code f/f} are removed, and {@code 0*f} is 0</li>
+ *     <li>{@code (f^a)^b} is {@code f^(a*b)} and division by a power of two is multiplication by its
+ *     inverse, both exact</li>
+ * </ul>
+ * <p>
+ *     Like a hand simplification, the rewrites assume every subexpression is finite: {@code 0*ln(x)} is 0
+ *     even for x below 0, where the tree before simplifying is NaN. Only integer exponents are combined,
+ *     so {@code x^0.5*x^0.5} is not changed to x, which would also be defined for x below 0.
+ *     Adding like terms can change the last bits of a result.
+ * </p>
+ * <p>
+ *     Every node that is created is interned: a node with the same operator, function, value and children
+ *     as an earlier one is that node. Equal subtrees are then the same object, so like terms are found by
+ *     identity, and repeated subtrees, common in derivatives, are stored once.
+ *     The original tree is not changed.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Node#simplify()
+ * @see core.SimplificationResult
+ */
+final class Simplifier {
+
+    //passes stop here even if the last one changed the tree
+    private static final int MAX_PASSES = 16;
+
+    //_________Fields_________//
+    private final HashMap<Key, Node> interned = new HashMap<>();
+    //order nodes were interned in, sorts the terms of sums and the factors of products
+    private final IdentityHashMap<Node, Integer> ids = new IdentityHashMap<>();
+    //simplified form of each node of the tree of the current pass
+    private IdentityHashMap<Node, Node> memo;
+
+    private Simplifier() {
+    }
+
+    /**
+     * Simplifies the tree until a pass does not change it
+     *
+     * @param root root of the tree
+     * @return simplified tree and the number of nodes before and after
+     */
+    static SimplificationResult simplify(Node root) {
+        Simplifier simplifier = new Simplifier();
+        Node node = root;
+        int passes = 0;
+        while (passes < MAX_PASSES) {
+            simplifier.memo = new IdentityHashMap<>();
+            Node next = simplifier.pass(node);
+            passes++;
+            if (next == node)
+                break;
+            node = next;
+        }
+        return new SimplificationResult(node, treeNodes(root), treeNodes(node), passes);
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * @return number of nodes of the tree, repeated subtrees counted once for each place they appear
+     */
+    private static long treeNodes(Node root) {
+        return new ExpressionDag(root).getTreeNodeCount();
+    }
+
+    private Node pass(Node node) {
+        Node s = memo.get(node);
+        if (s == null) {
+            s = simplifyNode(node);
+            memo.put(node, s);
+        }
+        return s;
+    }
+
+    private Node simplifyNode(Node node) {
+        switch (node.operator) {
+            case CONSTANT:
+                return withFunction(constant(node.constant), node.type);
+            case VARIABLE:
+                return withFunction(intern(Operator.VARIABLE, EdgeType.DEFAULT, 0.0d, node.slot, node.name, null, null),
+                        node.type);
+            case ADD: {
+                List<Node> terms = new ArrayList<>();
+                collect(node, Operator.ADD, terms);
+                return withFunction(sum(terms), node.type);
+            }
+            case MULTIPLY: {
+                List<Node> factors = new ArrayList<>();
+                collect(node, Operator.MULTIPLY, factors);
+                return withFunction(product(factors), node.type);
+            }
+            case DIVIDE:
+                return withFunction(quotient(pass(node.left), pass(node.right)), node.type);
+            default:
+                return withFunction(power(pass(node.left), pass(node.right)), node.type);
+        }
+    }
+
+    /**
+     * Simplifies the operands of a chain of one operator without a function, the chain itself
+     * is not simplified, so a long chain costs time proportional to its length
+     */
+    private void collect(Node node, Operator operator, List<Node> operands) {
+        for (Node child : new Node[]{node.left, node.right}) {
+            if (child.operator == operator && child.type == EdgeType.DEFAULT)
+                collect(child, operator, operands);
+            else
+                operands.add(pass(child));
+        }
+    }
+
+    /**
+     * @return sum of simplified terms, constants added, like terms combined and sorted
+     */
+    private Node sum(List<Node> terms) {
+        double constant = 0.0d;
+        IdentityHashMap<Node, double[]> coefficients = new IdentityHashMap<>();
+        List<Node> order = new ArrayList<>();
+        List<Node> pending = new ArrayList<>(terms);
+        for (int i = 0; i < pending.size(); i++) {
+            Node term = pending.get(i);
+            if (isSum(term)) {
+                //a term simplified into a sum
+                pending.add(term.left);
+                pending.add(term.right);
+                continue;
+            }
+            if (isConstant(term)) {
+                constant += term.constant;
+                continue;
+            }
+            double coefficient = 1.0d;
+            if (isProduct(term) && isConstant(term.left)) {
+                coefficient = term.left.constant;
+                term = term.right;
+            }
+            double[] c = coefficients.get(term);
+            if (c == null) {
+                coefficients.put(term, new double[]{coefficient});
+                order.add(term);
+            } else {
+                c[0] += coefficient;
+            }
+        }
+
+        sortById(order);
+        Node result = null;
+        for (Node term : order) {
+            double coefficient = coefficients.get(term)[0];
+            if (coefficient == 0.0d)
+                continue;
+            Node t = coefficient == 1.0d ? term : binary(Operator.MULTIPLY, constant(coefficient), term);
+            result = result == null ? t : binary(Operator.ADD, result, t);
+        }
+        if (result == null)
+            return constant(constant);
+        return constant == 0.0d ? result : binary(Operator.ADD, result, constant(constant));
+    }
+
+    /**
+     * @return product of simplified factors, constants multiplied, integer powers of equal factors
+     *         combined and sorted, with the constant first. Factors with negative exponents are
+     *         divided out of the rest
+     */
+    private Node product(List<Node> factors) {
+        Factors f = new Factors();
+        for (Node factor : factors)
+            f.add(factor, 1.0d);
+        if (f.constant == 0.0d)
+            return constant(0.0d);
+        return fraction(f.constant, f);
+    }
+
+    /**
+     * @return product of the constant and the factors with positive exponents, divided by
+     *         the factors with negative exponents
+     */
+    private Node fraction(double constant, Factors factors) {
+        Node numerator = build(constant, factors, 1.0d), denominator = build(1.0d, factors, -1.0d);
+        return isConstant(denominator) ? numerator : binary(Operator.DIVIDE, numerator, denominator);
+    }
+
+    /**
+     * @return product of the constant and the factors whose exponents have the given sign
+     */
+    private Node build(double constant, Factors factors, double sign) {
+        sortById(factors.order);
+        Node result = null;
+        for (Node factor : factors.order) {
+            double exponent = factors.exponents.get(factor)[0] * sign;
+            if (!(exponent > 0.0d))
+                continue;
+            Node f = exponent == 1.0d ? factor : binary(Operator.POWER, factor, constant(exponent));
+            result = result == null ? f : binary(Operator.MULTIPLY, result, f);
+        }
+        if (result == null)
+            return constant(constant);
+        return constant == 1.0d ? result : binary(Operator.MULTIPLY, constant(constant), result);
+    }
+
+    /**
+     * Factors of a product, each one with the sum of its integer exponents
+     */
+    private final class Factors {
+        double constant = 1.0d;
+        final IdentityHashMap<Node, double[]> exponents = new IdentityHashMap<>();
+        final List<Node> order = new ArrayList<>();
+        //true once a factor was added a second time
+        boolean combined;
+
+        void add(Node factor, double exponent) {
+            if (isProduct(factor)) {
+                add(factor.left, exponent);
+                add(factor.right, exponent);
+                return;
+            }
+            if (isConstant(factor)) {
+                constant *= exponent == 1.0d ? factor.constant : 1.0d / factor.constant;
+                return;
+            }
+            if (isPower(factor) && isInteger(factor.right)) {
+                exponent *= factor.right.constant;
+                factor = factor.left;
+            }
+            double[] e = exponents.get(factor);
+            if (e == null) {
+                exponents.put(factor, new double[]{exponent});
+                order.add(factor);
+            } else {
+                e[0] += exponent;
+                combined = true;
+            }
+        }
+    }
+
+    private Node quotient(Node left, Node right) {
+        if (isConstant(right)) {
+            double c = right.constant;
+            if (c == 1.0d)
+                return left;
+            if (isConstant(left))
+                return fold(Operator.DIVIDE, left, right);
+            //1/c is exact for powers of two, the product can be combined with other terms
+            if (c != 0.0d && Double.isFinite(c) && Math.abs(c) == Math.scalb(1.0d, Math.getExponent(c))
+                    && Double.isFinite(1.0d / c))
+                return product(Arrays.asList(constant(1.0d / c), left));
+        }
+        if (isConstant(left) && left.constant == 0.0d)
+            return left;
+        if (left == right)
+            return constant(1.0d);
+        if (!isConstant(right)) {
+            //cancels factors of the numerator and denominator, the constant stays in the numerator
+            Factors f = new Factors();
+            f.add(left, 1.0d);
+            double constant = f.constant;
+            f.constant = 1.0d;
+            f.add(right, -1.0d);
+            if (f.combined && f.constant == 1.0d)
+                return fraction(constant, f);
+        }
+        return binary(Operator.DIVIDE, left, right);
+    }
+
+    private Node power(Node base, Node exponent) {
+        if (isConstant(exponent)) {
+            double e = exponent.constant;
+            if (e == 0.0d)
+                return constant(1.0d);
+            if (e == 1.0d)
+                return base;
+            if (isConstant(base))
+                return fold(Operator.POWER, base, exponent);
+            //(f^a)^b is f^(a*b) for integers
+            if (isInteger(exponent) && isPower(base) && isInteger(base.right))
+                return power(base.left, constant(base.right.constant * e));
+        }
+        if (isConstant(base) && base.constant == 1.0d)
+            return base;
+        return binary(Operator.POWER, base, exponent);
+    }
+
+    /**
+     * @return value of the operator applied to two constants, or the operator node if it is not finite
+     */
+    private Node fold(Operator operator, Node left, Node right) {
+        double value = new Node(operator, left, right).calculateTree(0.0d);
+        return Double.isFinite(value) ? constant(value) : intern(operator, EdgeType.DEFAULT, 0.0d, 0, null, left, right);
+    }
+
+    /**
+     * @return function applied to a simplified node, folded if the node is a constant, and wrapped
+     *         in {@code node + 0} if the node already has a function, as the parser does
+     */
+    private Node withFunction(Node node, EdgeType type) {
+        if (type == EdgeType.DEFAULT)
+            return node;
+        if (node.type != EdgeType.DEFAULT)
+            return intern(Operator.ADD, type, 0.0d, 0, null, node, constant(0.0d));
+        if (isConstant(node)) {
+            double value = new Node(node.constant, type).calculateTree(0.0d);
+            if (Double.isFinite(value))
+                return constant(value);
+        }
+        return intern(node.operator, type, node.constant, node.slot, node.name, node.left, node.right);
+    }
+
+    private Node binary(Operator operator, Node left, Node right) {
+        if (isConstant(left) && isConstant(right))
+            return fold(operator, left, right);
+        return intern(operator, EdgeType.DEFAULT, 0.0d, 0, null, left, right);
+    }
+
+    private Node constant(double value) {
+        //-0.0 and 0.0 are the same constant
+        return intern(Operator.CONSTANT, EdgeType.DEFAULT, value == 0.0d ? 0.0d : value, 0, null, null, null);
+    }
+
+    private Node intern(Operator operator, EdgeType type, double constant, int slot, String name, Node left, Node right) {
+        Key key = new Key(operator, type, constant, slot, name, left, right);
+        Node node = interned.get(key);
+        if (node == null) {
+            if (operator == Operator.VARIABLE)
+                node = new Node(new Node(slot, name), type);
+            else if (operator == Operator.CONSTANT)
+                node = new Node(constant, type);
+            else
+                node = new Node(operator, type, left, right);
+            interned.put(key, node);
+            ids.put(node, ids.size());
+        }
+        return node;
+    }
+
+    private void sortById(List<Node> nodes) {
+        nodes.sort((a, b) -> Integer.compare(ids.get(a), ids.get(b)));
+    }
+
+    private static boolean isConstant(Node node) {
+        return node.isConstant();
+    }
+
+    private static boolean isInteger(Node node) {
+        return node.isConstant() && node.constant == Math.rint(node.constant) && Math.abs(node.constant) < 1e15;
+    }
+
+    private static boolean isSum(Node node) {
+        return node.operator == Operator.ADD && node.type == EdgeType.DEFAULT;
+    }
+
+    private static boolean isProduct(Node node) {
+        return node.operator == Operator.MULTIPLY && node.type == EdgeType.DEFAULT;
+    }
+
+    private static boolean isPower(Node node) {
+        return node.operator == Operator.POWER && node.type == EdgeType.DEFAULT;
+    }
+
+    /**
+     * Identity of an interned node, children are compared by identity since they are interned first
+     */
+    private static final class Key {
+        private final Operator operator;
+        private final EdgeType type;
+        private final long constant;
+        private final int slot;
+        private final String name;
+        private final Node left, right;
+
+        Key(Operator operator, EdgeType type, double constant, int slot, String name, Node left, Node right) {
+            this.operator = operator;
+            this.type = type;
+            this.constant = Double.doubleToLongBits(constant);
+            this.slot = slot;
+            this.name = name;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return operator == k.operator && type == k.type && constant == k.constant && slot == k.slot
+                    && Objects.equals(name, k.name) && left == k.left && right == k.right;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = operator.hashCode() * 31 + type.hashCode();
+            h = h * 31 + Long.hashCode(constant);
+            h = h * 31 + slot;
+            h = h * 31 + System.identityHashCode(left);
+            return h * 31 + System.identityHashCode(right);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SumEvent Class
+ * <p>
+ *     Flight Recorder event for one finite sum over a range, or one infinite series.
+ * </p>
+ * Package private because it is meant for use in the core package exclusively
+ */
+@Name("calculator.Sum")
+@Label("Sum")
+@Category("Calculator")
+@Description("A finite sum summed by a RangeSummation, or an infinite series summed with convergence acceleration")
+final class SumEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    @Description("RANGE for finite sums, otherwise the acceleration method of the series")
+    String method;
+
+    @Label("Start")
+    long start;
+
+    @Label("Instructions")
+    @Description("Length of the compiled program of the equation")
+    int instructions;
+
+    @Label("Terms")
+    @Description("Number of terms calculated")
+    long terms;
+
+}
@@ -0,0 +1,305 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Truncated power series arithmetic, used to calculate Taylor coefficients numerically
+ * <p>
+ *     A series is stored as an array {@code a} of length k + 1 representing
+ *     {@code a[0] + a[1]*(x - c) + ... + a[k]*(x - c)^k}. The compiled program of an equation
+ *     is run once with every value replaced by its series at c, so the result holds
+ *     {@code f^(i)(c) / i!} for every i up to k. Each operation takes O(k^2) time.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Node#taylorCoefficients(int, double)
+ */
+final class TaylorSeries {
+
+    private static final EdgeType[] TYPES = EdgeType.values();
+    private static final double LN_10 = Math.log(10.0d);
+
+    private TaylorSeries() {
+    }
+
+    /**
+     * Calculates the Taylor coefficients of a compiled equation
+     *
+     * @param program compiled equation
+     * @param k last term of the series
+     * @param c point the series is centered on
+     * @return array of length k + 1 where index i holds the i-th derivative at c divided by i!
+     * @throws IllegalStateException if the equation has more than one variable
+     */
+    static double[] coefficients(CompiledEquation program, int k, double c) {
+        if (k < 0)
+            throw new IllegalArgumentException("Number of terms must not be negative: " + k);
+        program.requireSingleVariable();
+
+        int n = k + 1;
+        byte[] code = program.code();
+        double[] constants = program.constants();
+        double[][] stack = new double[program.getMaxStack()][n];
+        //series of shared subtrees, calculated once
+        double[][] stored = new double[program.getRegisterCount()][];
+        int[] registers = program.registers();
+        int sp = -1;
+        int constant = 0, register = 0;
+
+        for (byte op : code) {
+            switch (op) {
+                case CompiledEquation.CONSTANT:
+                    sp++;
+                    Arrays.fill(stack[sp], 0.0d);
+                    stack[sp][0] = constants[constant++];
+                    break;
+                case CompiledEquation.VARIABLE:
+                    sp++;
+                    Arrays.fill(stack[sp], 0.0d);
+                    stack[sp][0] = c;
+                    if (n > 1)
+                        stack[sp][1] = 1.0d;
+                    break;
+                case CompiledEquation.LOAD:
+                    sp++;
+                    stack[sp] = stored[registers[register++]].clone();
+                    break;
+                case CompiledEquation.STORE:
+                    stored[registers[register++]] = stack[sp].clone();
+                    break;
+                case CompiledEquation.ADD:
+                    sp--;
+                    for (int i = 0; i < n; i++)
+                        stack[sp][i] += stack[sp + 1][i];
+                    break;
+                case CompiledEquation.MULTIPLY:
+                    sp--;
+                    stack[sp] = multiply(stack[sp], stack[sp + 1]);
+                    break;
+                case CompiledEquation.DIVIDE:
+                    sp--;
+                    stack[sp] = divide(stack[sp], stack[sp + 1]);
+                    break;
+                case CompiledEquation.POWER:
+                    sp--;
+                    stack[sp] = power(stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    stack[sp] = function(TYPES[op - CompiledEquation.FUNCTION], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+
+    //_________series operations_________//
+
+    static double[] multiply(double[] a, double[] b) {
+        double[] r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            double sum = 0.0d;
+            for (int j = 0; j <= i; j++)
+                sum += a[j] * b[i - j];
+            r[i] = sum;
+        }
+        return r;
+    }
+
+    static double[] divide(double[] a, double[] b) {
+        double[] q = new double[a.length];
+        for (int i = 0; i < q.length; i++) {
+            double sum = a[i];
+            for (int j = 1; j <= i; j++)
+                sum -= b[j] * q[i - j];
+            q[i] = sum / b[0];
+        }
+        return q;
+    }
+
+    static double[] exp(double[] a) {
+        double[] e = new double[a.length];
+        e[0] = Math.exp(a[0]);
+        for (int i = 1; i < e.length; i++) {
+            double sum = 0.0d;
+            for (int j = 1; j <= i; j++)
+                sum += j * a[j] * e[i - j];
+            e[i] = sum / i;
+        }
+        return e;
+    }
+
+    static double[] log(double[] a) {
+        double[] l = new double[a.length];
+        l[0] = Math.log(a[0]);
+        for (int i = 1; i < l.length; i++) {
+            double sum = 0.0d;
+            for (int j = 1; j < i; j++)
+                sum += j * l[j] * a[i - j];
+            l[i] = (a[i] - sum / i) / a[0];
+        }
+        return l;
+    }
+
+    /**
+     * a^b, using the power rule recurrence when b is a constant
+     */
+    static double[] power(double[] a, double[] b) {
+        if (!isConstant(b))
+            return exp(multiply(b, log(a)));
+
+        double r = b[0];
+        if (a[0] != 0.0d) {
+            double[] p = new double[a.length];
+            p[0] = Math.pow(a[0], r);
+            for (int i = 1; i < p.length; i++) {
+                double sum = 0.0d;
+                for (int j = 1; j <= i; j++)
+                    sum += ((r + 1.0d) * j - i) * a[j] * p[i - j];
+                p[i] = sum / (i * a[0]);
+            }
+            return p;
+        }
+
+        //the recurrence divides by a[0], whole powers of a series starting at 0 are multiplied out
+        if (r >= 0.0d && r == Math.rint(r) && r <= Integer.MAX_VALUE) {
+            double[] p = new double[a.length];
+            p[0] = 1.0d;
+            double[] base = a;
+            for (long e = (long) r; e > 0; e >>= 1) {
+                if ((e & 1) == 1)
+                    p = multiply(p, base);
+                if (e > 1)
+                    base = multiply(base, base);
+            }
+            return p;
+        }
+
+        //not differentiable at c, every coefficient follows the value
+        double[] p = new double[a.length];
+        p[0] = Math.pow(a[0], r);
+        for (int i = 1; i < p.length; i++)
+            p[i] = r < 1.0d || r < i ? Double.NaN : 0.0d;
+        return p;
+    }
+
+    /**
+     * Applies a function to a series
+     */
+    static double[] function(EdgeType type, double[] a) {
+        switch (type) {
+            case SINE:           return sinCos(a)[0];
+            case COSINE:         return sinCos(a)[1];
+            case TANGENT:        { double[][] sc = sinCos(a); return divide(sc[0], sc[1]); }
+            case COSECANT:       return divide(one(a.length), sinCos(a)[0]);
+            case SECANT:         return divide(one(a.length), sinCos(a)[1]);
+            case COTANGENT:      { double[][] sc = sinCos(a); return divide(sc[1], sc[0]); }
+            case ARCSINE:        return arcsin(a, 1.0d);
+            case ARCCOSINE:      return arcsin(a, -1.0d);
+            case ARCTANGENT:     return arctan(a);
+            case ARCCOSECANT:    return arcsin(divide(one(a.length), a), 1.0d);
+            case ARCSECANT:      return arcsin(divide(one(a.length), a), -1.0d);
+            case ARCCOTANGENT:   return arctan(divide(one(a.length), a));
+            case NATURAL_LOG:    return log(a);
+            case LOG_BASE_TEN:   return scale(log(a), 1.0d / LN_10);
+            case ABSOLUTE_VALUE: return scale(a, sign(a));
+            default:             return a;
+        }
+    }
+
+
+    //_________private methods_________//
+
+    /**
+     * @return series of sin(a) at index 0 and cos(a) at index 1, calculated together
+     */
+    private static double[][] sinCos(double[] a) {
+        double[] s = new double[a.length];
+        double[] c = new double[a.length];
+        s[0] = Math.sin(a[0]);
+        c[0] = Math.cos(a[0]);
+        for (int i = 1; i < a.length; i++) {
+            double sumS = 0.0d, sumC = 0.0d;
+            for (int j = 1; j <= i; j++) {
+                sumS += j * a[j] * c[i - j];
+                sumC += j * a[j] * s[i - j];
+            }
+            s[i] = sumS / i;
+            c[i] = -sumC / i;
+        }
+        return new double[][]{s, c};
+    }
+
+    /**
+     * asin(a) when sign is 1, acos(a) when sign is -1.
+     * Both are the integral of sign * a' / sqrt(1 - a^2)
+     */
+    private static double[] arcsin(double[] a, double sign) {
+        double[] root = power(subtract(one(a.length), multiply(a, a)), constant(a.length, -0.5d));
+        double[] f = integrate(a, scale(root, sign));
+        f[0] = sign > 0 ? Math.asin(a[0]) : Math.acos(a[0]);
+        return f;
+    }
+
+    private static double[] arctan(double[] a) {
+        double[] sum = multiply(a, a);
+        sum[0] += 1.0d;
+        double[] f = integrate(a, divide(one(a.length), sum));
+        f[0] = Math.atan(a[0]);
+        return f;
+    }
+
+    /**
+     * Series of f where f' = a' * h, index 0 is left for the caller
+     */
+    private static double[] integrate(double[] a, double[] h) {
+        double[] f = new double[a.length];
+        for (int i = 1; i < f.length; i++) {
+            double sum = 0.0d;
+            for (int j = 1; j <= i; j++)
+                sum += j * a[j] * h[i - j];
+            f[i] = sum / i;
+        }
+        return f;
+    }
+
+    //sign of the series near c, taken from its first non zero coefficient
+    private static double sign(double[] a) {
+        for (double v : a)
+            if (v != 0.0d)
+                return Math.signum(v);
+        return 1.0d;
+    }
+
+    private static boolean isConstant(double[] a) {
+        for (int i = 1; i < a.length; i++)
+            if (a[i] != 0.0d)
+                return false;
+        return true;
+    }
+
+    private static double[] subtract(double[] a, double[] b) {
+        double[] r = new double[a.length];
+        for (int i = 0; i < r.length; i++)
+            r[i] = a[i] - b[i];
+        return r;
+    }
+
+    private static double[] scale(double[] a, double s) {
+        double[] r = new double[a.length];
+        for (int i = 0; i < r.length; i++)
+            r[i] = a[i] * s;
+        return r;
+    }
+
+    private static double[] constant(int n, double value) {
+        double[] r = new double[n];
+        r[0] = value;
+        return r;
+    }
+
+    private static double[] one(int n) {
+        return constant(n, 1.0d);
+    }
+
+}
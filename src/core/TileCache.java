@@ -0,0 +1,134 @@
+package core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TileCache Class
+ * <p>
+ *     A bounded cache of sampled curves, one entry per curve, zoom level and square tile of the plane,
+ *     so panning back over a part of the plane or drawing a frame again does not evaluate anything.
+ *     The cache holds at most {@code maxWeight} sampled points; when the limit is passed the least
+ *     recently used tiles are evicted.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.TiledView
+ */
+final class TileCache {
+
+    //_________Fields_________//
+    private final long maxWeight;
+    //access ordered, the first entry is the least recently used
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight, hits, misses, evictions;
+
+    /**
+     * @param maxWeight largest total number of points held
+     * @throws IllegalArgumentException if maxWeight is not positive
+     */
+    TileCache(long maxWeight) {
+        if (maxWeight <= 0)
+            throw new IllegalArgumentException("Cache limits must be positive");
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return the tile, or null if it is not in the cache
+     */
+    synchronized Tile get(Key key) {
+        Tile tile = tiles.get(key);
+        if (tile == null)
+            misses++;
+        else
+            hits++;
+        return tile;
+    }
+
+    /**
+     * Adds the tile, evicting the least recently used tiles if the cache is too heavy
+     */
+    synchronized void put(Key key, Tile tile) {
+        Tile old = tiles.put(key, tile);
+        if (old != null)
+            weight -= old.weight();
+        weight += tile.weight();
+
+        Iterator<Map.Entry<Key, Tile>> iterator = tiles.entrySet().iterator();
+        //the newest tile is always kept, even if it is heavier than maxWeight
+        while (weight > maxWeight && tiles.size() > 1) {
+            Tile t = iterator.next().getValue();
+            iterator.remove();
+            weight -= t.weight();
+            evictions++;
+        }
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TileCache[size=" + tiles.size() + ", weight=" + weight + ", hits=" + hits +
+                ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * Identifies a tile: the curve, the zoom level and the position of the tile in tiles from the
+     * origin, rows grow downwards
+     */
+    static final class Key {
+        final int curve, level;
+        final long column, row;
+
+        Key(int curve, int level, long column, long row) {
+            this.curve = curve;
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return curve == k.curve && level == k.level && column == k.column && row == k.row;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = curve;
+            h = 31 * h + level;
+            h = 31 * h + Long.hashCode(column);
+            return 31 * h + Long.hashCode(row);
+        }
+    }
+
+    /**
+     * Points of a curve sampled over one tile, in pixels from the top left corner of the tile,
+     * and the number of evaluations they cost
+     */
+    static final class Tile {
+        final double[] columns, rows;
+        final int evaluations;
+
+        Tile(double[] columns, double[] rows, int evaluations) {
+            this.columns = columns;
+            this.rows = rows;
+            this.evaluations = evaluations;
+        }
+
+        int weight() {
+            return columns.length;
+        }
+    }
+
+}
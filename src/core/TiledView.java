@@ -0,0 +1,241 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * TiledView Class
+ * <p>
+ *     The pannable and zoomable frame behind {@link Graph}. At every zoom level the plane is divided
+ *     into square tiles of {@code TILE} pixels, and each curve is sampled adaptively once per tile it is
+ *     drawn over. Samples are kept in a {@link TileCache}, so a frame only samples the tiles that are not
+ *     cached, in parallel, and joins the cached points of every visible tile, clipped to the tile.
+ *     Before a tile is sampled, the values of the curve over its columns are bounded with interval
+ *     arithmetic, and tiles the curve cannot reach are left empty without any evaluation.
+ * </p>
+ * <p>
+ *     Memory does not depend on the range of the plane: the frame has the size of the window and the
+ *     cache holds a fixed number of points. The position of the frame is kept in whole pixels of the
+ *     current zoom level, so tiles line up exactly after panning. Each zoom level scales the plane by
+ *     the square root of 2. A TiledView is not thread safe.
+ * </p>
+ *
+ * Package private because it is meant for use in the core package exclusively
+ *
+ * @see core.Graph
+ * @see core.TileCache
+ */
+final class TiledView {
+
+    //width and height of a tile in pixels
+    static final int TILE = 256;
+    //bounds of the zoom level, a factor of 2^32 either way
+    static final int MIN_LEVEL = -64, MAX_LEVEL = 64;
+    //points held by the cache, 16 bytes each
+    static final long CACHE_WEIGHT = 1L << 20;
+
+    //_________Fields_________//
+    private final double scale;
+    private final TileCache cache = new TileCache(CACHE_WEIGHT);
+    private final List<Curve> curves = new ArrayList<>();
+    private BufferedImage image;
+    private int[] pixels;
+    private int width, height, level, maxEvaluations;
+    //pixel of the plane, at the current zoom level, in the top left corner of the frame
+    private long column, row;
+    private boolean axes;
+
+    /**
+     * @param xMin x at the left edge of the frame
+     * @param yMax y at the top edge of the frame
+     * @param scale number of pixels per interval at zoom level 0
+     * @param width width of the frame in pixels
+     * @param height height of the frame in pixels
+     * @throws IllegalArgumentException if scale is not positive or a dimension is not positive
+     */
+    TiledView(double xMin, double yMax, double scale, int width, int height) {
+        if (!(scale > 0.0d) || !Double.isFinite(scale))
+            throw new IllegalArgumentException("Invalid scale " + scale);
+        this.scale = scale;
+        column = Math.round(xMin * scale);
+        row = Math.round(-yMax * scale);
+        resize(width, height);
+        maxEvaluations = (int) Math.min(Integer.MAX_VALUE, (long) CurveSampler.DEFAULT_EVALUATIONS_PER_COLUMN * width);
+    }
+
+    /**
+     * Changes the size of the frame, keeping its top left corner in place
+     *
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    void resize(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        if (image != null && width == this.width && height == this.height)
+            return;
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Moves the frame over the plane
+     *
+     * @param columns pixels to the right
+     * @param rows pixels downwards
+     */
+    void pan(long columns, long rows) {
+        column += columns;
+        row += rows;
+    }
+
+    /**
+     * Zooms in, or out for negative levels, keeping the point under the given pixel of the frame in place
+     *
+     * @param levels number of zoom levels
+     * @param atColumn column of the frame that stays in place
+     * @param atRow row of the frame that stays in place
+     */
+    void zoom(int levels, double atColumn, double atRow) {
+        int next = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level + levels));
+        if (next == level)
+            return;
+        double factor = pixelsPerUnit(next) / pixelsPerUnit(level);
+        column = Math.round((column + atColumn) * factor - atColumn);
+        row = Math.round((row + atRow) * factor - atRow);
+        level = next;
+    }
+
+    /**
+     * Adds a curve drawn by every following frame
+     *
+     * @param equation compiled equation
+     * @param slope true to draw the slope instead of the value
+     */
+    void addCurve(CompiledEquation equation, boolean slope) {
+        curves.add(new Curve(equation, slope));
+    }
+
+    void setAxes(boolean axes) {
+        this.axes = axes;
+    }
+
+    /**
+     * @param maxEvaluations largest number of evaluations to sample a curve across the width of the
+     *                       frame, used by tiles sampled afterwards
+     */
+    void setMaxEvaluations(int maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Draws the axes and the curves into the frame, sampling the tiles that are not cached
+     *
+     * @return number of evaluations used
+     */
+    int render() {
+        Arrays.fill(pixels, PlotRenderer.BACKGROUND_COLOR);
+        if (axes)
+            Rasterizer.drawAxes(pixels, width, height, -column, -row, PlotRenderer.AXES_COLOR);
+
+        long firstColumn = Math.floorDiv(column, TILE), lastColumn = Math.floorDiv(column + width - 1, TILE);
+        long firstRow = Math.floorDiv(row, TILE), lastRow = Math.floorDiv(row + height - 1, TILE);
+        List<TileCache.Key> keys = new ArrayList<>();
+        for (int c = 0; c < curves.size(); c++)
+            for (long r = firstRow; r <= lastRow; r++)
+                for (long t = firstColumn; t <= lastColumn; t++)
+                    keys.add(new TileCache.Key(c, level, t, r));
+
+        TileCache.Tile[] tiles = new TileCache.Tile[keys.size()];
+        for (int i = 0; i < tiles.length; i++)
+            tiles[i] = cache.get(keys.get(i));
+        int budget = (int) Math.max(2, (long) maxEvaluations * TILE / width);
+        int evaluations = IntStream.range(0, tiles.length).parallel().filter(i -> tiles[i] == null).map(i -> {
+            tiles[i] = sample(keys.get(i), budget);
+            cache.put(keys.get(i), tiles[i]);
+            return tiles[i].evaluations;
+        }).sum();
+
+        for (int i = 0; i < tiles.length; i++) {
+            TileCache.Key key = keys.get(i);
+            int left = (int) (key.column * TILE - column), top = (int) (key.row * TILE - row);
+            Rasterizer.drawPolyline(pixels, width, Math.max(0, left), Math.max(0, top),
+                    Math.min(width - 1, left + TILE - 1), Math.min(height - 1, top + TILE - 1),
+                    tiles[i].columns, tiles[i].rows, tiles[i].columns.length, left, top, PlotRenderer.CURVE_COLOR);
+        }
+        return evaluations;
+    }
+
+    /**
+     * @return part of the plane shown by the frame
+     */
+    Viewport getViewport() {
+        double ppu = pixelsPerUnit(level);
+        return new Viewport(column / ppu, (column + width) / ppu, -(row + height) / ppu, -row / ppu);
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    int[] getPixels() {
+        return pixels;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    TileCache getCache() {
+        return cache;
+    }
+
+
+    //_________private methods_________//
+
+    private double pixelsPerUnit(int level) {
+        return scale * Math.pow(2.0d, level / 2.0d);
+    }
+
+    private TileCache.Tile sample(TileCache.Key key, int budget) {
+        double ppu = pixelsPerUnit(key.level);
+        double xMin = key.column * TILE / ppu, xMax = (key.column + 1) * TILE / ppu;
+        double yMin = -(key.row + 1) * TILE / ppu, yMax = -key.row * TILE / ppu;
+        //so far from the origin that a tile is narrower than the precision of a double
+        if (!(xMin < xMax) || !(yMin < yMax))
+            return new TileCache.Tile(new double[0], new double[0], 0);
+
+        Curve curve = curves.get(key.curve);
+        if (!curve.slope) {
+            //skip tiles the curve provably does not reach, with a pixel of margin for rounding to rows
+            Interval bounds = curve.equation.calculateBounds(xMin, xMax);
+            if (bounds.isEmpty() || bounds.getUpper() < yMin - 1.0d / ppu || bounds.getLower() > yMax + 1.0d / ppu)
+                return new TileCache.Tile(new double[0], new double[0], 0);
+        }
+        CurveSampler sampler = new CurveSampler();
+        int evaluations = sampler.sample(curve.equation, curve.slope, new Viewport(xMin, xMax, yMin, yMax),
+                TILE, TILE, 0.0d, TILE, budget);
+        int n = sampler.getCount();
+        return new TileCache.Tile(Arrays.copyOf(sampler.getColumns(), n), Arrays.copyOf(sampler.getRows(), n), evaluations);
+    }
+
+    private static final class Curve {
+        final CompiledEquation equation;
+        final boolean slope;
+
+        Curve(CompiledEquation equation, boolean slope) {
+            this.equation = equation;
+            this.slope = slope;
+        }
+    }
+
+}
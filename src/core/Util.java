@@ -11,18 +11,6 @@ package core;
  */
  class Util {
 
-    /**
-     * Helper function to test if a character is an operator
-     *
-     * @param value Character to be tested
-     * @return true if param value is a character and false otherwise
-     * @apiNote The subtraction/negative sign '-' is not considered an operator
-     */
-	static boolean isOperator(char value){
-        return value == '^' || value == '/' || value == '*' || value == '+';
-
-    }
-
     /**
      * Helper function to test if a character is numeric, including a period
      *
@@ -34,21 +22,6 @@ package core;
         return (c >= 48 && c <= 57) || c == '.';
     }
 
-    /**
-     * Helper function to determine if a character is an expression
-     *
-     * @param c character to be tested if it is an expression
-     * @return true if c is an expression, otherwise false
-     * @apiNote A character is considered an expression if it is an operator, numerical, 'x', '-', or '_'
-     */
-	static boolean isExpression(char c){
-        return isNumerical(c) || isOperator(c) || c == 'x' || c == '-' || c == '_' || c == '(' || c == ')';
-    }
-
-    static boolean canMultiply(char c){
-	    return (c >= 48 && c <= 57) || c == 'x';
-    }
-
     /**
      *
      * Calculates the factorial of {@code number} and returns the value as a long
@@ -63,4 +36,16 @@ package core;
 	    return number * factorial(number - 1);
     }
 
+    /**
+     * Formats a constant for display, whole numbers are written without a decimal point
+     *
+     * @param value constant to be formatted
+     * @return String representing value
+     */
+    static String format(double value){
+        if(value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
 }
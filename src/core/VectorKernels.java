@@ -0,0 +1,78 @@
+package core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD loops used by the batch evaluator in {@code CompiledEquation}
+ *
+ * Package private because it is meant for use in the core package exclusively.
+ * This class uses the incubating {@code jdk.incubator.vector} module and is only loaded
+ * when that module is present, see {@link CompiledEquation#VECTORIZED}.
+ * Only operations whose results are exactly rounded are done here, so batch results
+ * are the same as calculating one x at a time.
+ *
+ * @see core.CompiledEquation
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * a[aOffset + i] += b[bOffset + i] for every i below length
+     */
+    static void add(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.add(vb).intoArray(a, aOffset + i);
+        }
+        for (; i < length; i++)
+            a[aOffset + i] += b[bOffset + i];
+    }
+
+    /**
+     * a[aOffset + i] *= b[bOffset + i] for every i below length
+     */
+    static void multiply(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.mul(vb).intoArray(a, aOffset + i);
+        }
+        for (; i < length; i++)
+            a[aOffset + i] *= b[bOffset + i];
+    }
+
+    /**
+     * a[aOffset + i] /= b[bOffset + i] for every i below length
+     */
+    static void divide(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.div(vb).intoArray(a, aOffset + i);
+        }
+        for (; i < length; i++)
+            a[aOffset + i] /= b[bOffset + i];
+    }
+
+    /**
+     * a[aOffset + i] = |a[aOffset + i]| for every i below length
+     */
+    static void abs(double[] a, int aOffset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).abs().intoArray(a, aOffset + i);
+        }
+        for (; i < length; i++)
+            a[aOffset + i] = Math.abs(a[aOffset + i]);
+    }
+
+}
@@ -0,0 +1,114 @@
+package core;
+
+/**
+ * Viewport Class
+ * <p>
+ *     The rectangle [xMin, xMax] x [yMin, yMax] of the plane shown by a plot, and the mapping between
+ *     it and the pixels of an image. Column 0 is at xMin and row 0 is at yMax, so y grows upwards.
+ *     A Viewport does not change after construction and can be shared between threads.
+ * </p>
+ *
+ * @see core.PlotRenderer
+ */
+public final class Viewport {
+
+    //_________Fields_________//
+    private final double xMin, xMax, yMin, yMax;
+
+    /**
+     * @param xMin x Minimum
+     * @param xMax x Maximum
+     * @param yMin y Minimum
+     * @param yMax y Maximum
+     * @throws IllegalArgumentException if a minimum is not below its maximum or a bound is not finite
+     */
+    public Viewport(double xMin, double xMax, double yMin, double yMax) {
+        if (!(xMin < xMax) || !(yMin < yMax) || !Double.isFinite(xMax - xMin) || !Double.isFinite(yMax - yMin))
+            throw new IllegalArgumentException("Invalid viewport [" + xMin + ", " + xMax + "] x ["
+                    + yMin + ", " + yMax + "]");
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+
+    //_________public methods_________//
+
+    /**
+     * @param column pixel column, may be fractional
+     * @param width width of the image in pixels
+     * @return value of x at the left edge of the given column
+     */
+    public double getX(double column, int width) {
+        return xMin + column * (xMax - xMin) / width;
+    }
+
+    /**
+     * @param x value of x
+     * @param width width of the image in pixels
+     * @return column, possibly fractional or outside of the image, of the given x
+     */
+    public double getColumn(double x, int width) {
+        return (x - xMin) * width / (xMax - xMin);
+    }
+
+    /**
+     * @param y value of y
+     * @param height height of the image in pixels
+     * @return row, possibly fractional or outside of the image, of the given y
+     */
+    public double getRow(double y, int height) {
+        return (yMax - y) * height / (yMax - yMin);
+    }
+
+    /**
+     * @return x Minimum
+     */
+    public double getXMin() {
+        return xMin;
+    }
+
+    /**
+     * @return x Maximum
+     */
+    public double getXMax() {
+        return xMax;
+    }
+
+    /**
+     * @return y Minimum
+     */
+    public double getYMin() {
+        return yMin;
+    }
+
+    /**
+     * @return y Maximum
+     */
+    public double getYMax() {
+        return yMax;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Viewport))
+            return false;
+        Viewport v = (Viewport) o;
+        return xMin == v.xMin && xMax == v.xMax && yMin == v.yMin && yMax == v.yMax;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(xMin);
+        h = 31 * h + Double.hashCode(xMax);
+        h = 31 * h + Double.hashCode(yMin);
+        return 31 * h + Double.hashCode(yMax);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + xMin + ", " + xMax + "] x [" + yMin + ", " + yMax + "]";
+    }
+
+}